@@ -0,0 +1,55 @@
+package frc.robot.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.hal.HAL;
+import frc.robot.commands.drive.DefaultDriveCommand;
+import frc.robot.subsystems.DrivetrainSubsystem;
+import frc.robot.util.SensorSnapshot;
+
+/**
+ * DefaultDriveCommand.execute() against a real DrivetrainSubsystem on the simulation HAL, alone
+ * and followed by the drivetrain's periodic(), which is what one teleop loop of driving costs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DriveCommandBenchmark {
+    private DrivetrainSubsystem drivetrain;
+    private DefaultDriveCommand command;
+    private double time;
+
+    @Setup
+    public void setup() {
+        HAL.initialize(500, 0);
+        drivetrain = new DrivetrainSubsystem(new SensorSnapshot());
+        command = new DefaultDriveCommand(drivetrain,
+            () -> Math.sin(time),
+            () -> Math.cos(time),
+            () -> Math.sin(time * 0.3),
+            () -> 0,
+            () -> false);
+        command.initialize();
+    }
+
+    @Benchmark
+    public void execute() {
+        time += 0.02;
+        command.execute();
+    }
+
+    @Benchmark
+    public void executeAndPeriodic() {
+        time += 0.02;
+        command.execute();
+        drivetrain.periodic();
+    }
+}
@@ -0,0 +1,102 @@
+package frc.robot.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.Constants;
+import frc.robot.subsystems.DrivetrainSubsystem;
+import frc.robot.util.FastSwerveKinematics;
+import frc.robot.util.PoseHistoryEstimator;
+
+/**
+ * The math DrivetrainSubsystem.periodic() runs every loop: inverse kinematics, desaturate, then
+ * integrate odometry. fastCycle is what the drivetrain does, wpilibCycle is the same work with
+ * the WPILib classes it replaced, for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DrivetrainMathBenchmark {
+    private static final double HALF_TRACK = Constants.DRIVETRAIN_TRACKWIDTH_METERS / 2.0;
+    private static final double HALF_BASE = Constants.DRIVETRAIN_WHEELBASE_METERS / 2.0;
+    private static final double DT = 0.02;
+
+    private final double[] moduleX = { HALF_TRACK, HALF_TRACK, -HALF_TRACK, -HALF_TRACK };
+    private final double[] moduleY = { HALF_BASE, -HALF_BASE, HALF_BASE, -HALF_BASE };
+
+    private FastSwerveKinematics fastKinematics;
+    private PoseHistoryEstimator estimator;
+    private final double[] speeds = new double[4];
+    private final double[] angles = new double[4];
+    private final double[] distances = new double[4];
+
+    private SwerveDriveKinematics kinematics;
+    private SwerveDriveOdometry odometry;
+    private final SwerveModulePosition[] positions = new SwerveModulePosition[4];
+
+    private double time;
+    private double gyro;
+
+    @Setup
+    public void setup() {
+        fastKinematics = new FastSwerveKinematics(moduleX, moduleY);
+        estimator = new PoseHistoryEstimator(fastKinematics, 0, distances,
+            Constants.POSE_HISTORY_SIZE, Constants.ODOMETRY_STD_DEVS, Constants.VISION_STD_DEVS);
+
+        kinematics = new SwerveDriveKinematics(
+            new Translation2d(moduleX[0], moduleY[0]),
+            new Translation2d(moduleX[1], moduleY[1]),
+            new Translation2d(moduleX[2], moduleY[2]),
+            new Translation2d(moduleX[3], moduleY[3]));
+        for (int i = 0; i < 4; i++) {
+            positions[i] = new SwerveModulePosition();
+        }
+        odometry = new SwerveDriveOdometry(kinematics, new Rotation2d(), positions);
+    }
+
+    /* A slowly changing command so the branches aren't all predicted the same way every call */
+    private double command(double phase) {
+        return Math.sin(time * 0.7 + phase) * DrivetrainSubsystem.MAX_VELOCITY_METERS_PER_SECOND;
+    }
+
+    @Benchmark
+    public void fastCycle(Blackhole blackhole) {
+        time += DT;
+        gyro += 0.01;
+        fastKinematics.toModuleStates(command(0), command(1), command(2) * 0.5, speeds, angles);
+        FastSwerveKinematics.desaturateWheelSpeeds(speeds, DrivetrainSubsystem.MAX_VELOCITY_METERS_PER_SECOND);
+        for (int i = 0; i < 4; i++) {
+            distances[i] += speeds[i] * DT;
+        }
+        estimator.update(time, gyro, distances, angles);
+        blackhole.consume(estimator.getX());
+    }
+
+    @Benchmark
+    public void wpilibCycle(Blackhole blackhole) {
+        time += DT;
+        gyro += 0.01;
+        SwerveModuleState[] states = kinematics.toSwerveModuleStates(
+            new ChassisSpeeds(command(0), command(1), command(2) * 0.5));
+        SwerveDriveKinematics.desaturateWheelSpeeds(states, DrivetrainSubsystem.MAX_VELOCITY_METERS_PER_SECOND);
+        for (int i = 0; i < 4; i++) {
+            positions[i] = new SwerveModulePosition(positions[i].distanceMeters + states[i].speedMetersPerSecond * DT, states[i].angle);
+        }
+        blackhole.consume(odometry.update(new Rotation2d(gyro), positions));
+    }
+}
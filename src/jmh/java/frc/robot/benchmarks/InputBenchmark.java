@@ -0,0 +1,69 @@
+package frc.robot.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Joystick;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import frc.robot.util.DPadButton;
+import frc.robot.util.JoystickModification;
+
+/**
+ * Per-loop driver input handling: the stick shaping every drive axis goes through, and the D-pad
+ * buttons the scheduler polls for the operator's bindings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InputBenchmark {
+    private JoystickModification modification;
+    private DPadButton[] dPad;
+    private double axis;
+
+    @Setup
+    public void setup() {
+        HAL.initialize(500, 0);
+        modification = new JoystickModification();
+        Joystick joystick = new Joystick(1);
+        dPad = new DPadButton[] {
+            new DPadButton(joystick, DPadButton.Direction.UP),
+            new DPadButton(joystick, DPadButton.Direction.RIGHT),
+            new DPadButton(joystick, DPadButton.Direction.DOWN),
+            new DPadButton(joystick, DPadButton.Direction.LEFT)
+        };
+        DriverStationSim.setJoystickPOVCount(1, 1);
+        DriverStationSim.setJoystickPOV(1, 0, 45);
+        DriverStationSim.notifyNewData();
+        DriverStation.refreshData();
+    }
+
+    @Benchmark
+    public double modifyAxis() {
+        // Sweeps the whole stick range, including the deadband
+        axis += 0.013;
+        if (axis > 1) {
+            axis = -1;
+        }
+        return modification.modifyAxis(axis);
+    }
+
+    @Benchmark
+    public int dPadButtons() {
+        int pressed = 0;
+        for (DPadButton button : dPad) {
+            if (button.getAsBoolean()) {
+                pressed++;
+            }
+        }
+        return pressed;
+    }
+}
@@ -0,0 +1,64 @@
+package frc.robot.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.pathplanner.lib.PathConstraints;
+import com.pathplanner.lib.PathPlanner;
+import com.pathplanner.lib.PathPlannerTrajectory;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.trajectory.Trajectory;
+import frc.robot.Constants;
+import frc.robot.util.CompiledPaths;
+
+/**
+ * Loading an auto path both ways the robot can (compiled file, or PathPlanner parsing the JSON
+ * and generating it), and sampling it, which PPSwerveControllerCommand does every loop.
+ * Paths are read from src/main/deploy, so run from the project directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PathBenchmark {
+    @Param({ "ExitAndBalance A1", "ScoreRotateAndExit A3" })
+    public String path;
+
+    private PathConstraints constraints;
+    private PathPlannerTrajectory trajectory;
+    private double time;
+
+    @Setup
+    public void setup() {
+        HAL.initialize(500, 0);
+        constraints = new PathConstraints(Constants.AUTO_MAX_VELOCITY, Constants.AUTO_MAX_ACCELERATION);
+        trajectory = PathPlanner.loadPath(path, constraints);
+    }
+
+    @Benchmark
+    public PathPlannerTrajectory loadCompiled() {
+        return CompiledPaths.load(path, constraints);
+    }
+
+    @Benchmark
+    public PathPlannerTrajectory loadJson() {
+        return PathPlanner.loadPath(path, constraints);
+    }
+
+    @Benchmark
+    public Trajectory.State sample() {
+        time += 0.02;
+        if (time > trajectory.getTotalTimeSeconds()) {
+            time = 0;
+        }
+        return trajectory.sample(time);
+    }
+}
@@ -0,0 +1,73 @@
+package frc.robot.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.util.WPIUtilJNI;
+import frc.robot.Constants;
+import frc.robot.subsystems.Vision;
+
+/**
+ * Vision.periodic() draining and parsing a loop's worth of Limelight frames (two, like a
+ * Limelight at 90 fps against a 50 Hz loop) published to the local NetworkTables instance.
+ * Publishing the frames is part of the measured time, compare runs against each other rather
+ * than reading it as the cost of periodic() alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VisionBenchmark {
+    private static final int FRAMES_PER_LOOP = 2;
+
+    private Vision vision;
+    private DoublePublisher[] values;
+    private DoubleArrayPublisher botposeBlue;
+    private DoubleArrayPublisher botposeRed;
+    private final double[] botpose = { 2.5, 4.0, 0, 0, 0, 180, 30, 2, 0, 3.1, 0.4 };
+
+    @Setup
+    public void setup() {
+        HAL.initialize(500, 0);
+        vision = new Vision();
+        NetworkTable table = NetworkTableInstance.getDefault().getTable(Constants.LIMELIGHT_UPS_NAME);
+        values = new DoublePublisher[] {
+            table.getDoubleTopic("tv").publish(),
+            table.getDoubleTopic("tid").publish(),
+            table.getDoubleTopic("tx").publish(),
+            table.getDoubleTopic("ta").publish(),
+            table.getDoubleTopic("tl").publish(),
+            table.getDoubleTopic("cl").publish()
+        };
+        botposeBlue = table.getDoubleArrayTopic("botpose_wpiblue").publish();
+        botposeRed = table.getDoubleArrayTopic("botpose_wpired").publish();
+    }
+
+    @Benchmark
+    public int readFrames() {
+        for (int i = 0; i < FRAMES_PER_LOOP; i++) {
+            long time = WPIUtilJNI.now();
+            values[0].set(1, time);
+            values[1].set(7, time);
+            values[2].set(-3.5, time);
+            values[3].set(0.4, time);
+            values[4].set(12, time);
+            values[5].set(11, time);
+            botposeBlue.set(botpose, time);
+            botposeRed.set(botpose, time);
+        }
+        vision.periodic();
+        return vision.getFrameCount();
+    }
+}
@@ -8,6 +8,12 @@ public final class Constants {
       //auto constants
       public static final double AUTO_MAX_VELOCITY = 3;
       public static final double AUTO_MAX_ACCELERATION = 3;
+      public static final double AUTO_TRANSLATION_P_COEFF = 5.0;
+      public static final double AUTO_TRANSLATION_I_COEFF = 0;
+      public static final double AUTO_TRANSLATION_D_COEFF = 0;
+      public static final double AUTO_ROTATION_P_COEFF = 3.0;
+      public static final double AUTO_ROTATION_I_COEFF = 0;
+      public static final double AUTO_ROTATION_D_COEFF = 0;
 
       public static final double COMMUNITY_MAX_WIDTH_METERS = 4.91;
       public static final double COMMUNITY_MIN_WIDTH_METERS = 3.36;
@@ -31,13 +37,77 @@ public final class Constants {
       public static final double DRIVETRAIN_TRACKWIDTH_METERS = 0.5969; //Measured on robot
       public static final double DRIVETRAIN_WHEELBASE_METERS = 0.5969;
       public static final double DRIVE_ROTATE_TOLERANCE_DEGREES = 1.0;
+      public static final int DRIVE_CURRENT_LIMIT = 40;
+      public static final boolean CLOSED_LOOP_DRIVE_ENABLED = false; //velocity PID on the spark max instead of open loop voltage
+      public static final double DRIVE_VELOCITY_P_COEFF = 0.1; //duty cycle per m/s of error
+      public static final double DRIVE_VELOCITY_I_COEFF = 0;
+      public static final double DRIVE_VELOCITY_D_COEFF = 0;
+      public static final double DRIVE_KS = 0.15; //volts
+      public static final double DRIVE_KV = 2.19; //volts per m/s, 12V / theoretical max speed
+      public static final double DRIVE_KA = 0; //volts per m/s^2
       public static final double DRIVE_SPEED_SCALER = 0.85;
       public static final double SLOW_DRIVE_SCALING = 0.3;
       public static final double SLOW_ROTATION_SCALING = 0.5;
-      public static final int INPUT_ROLLING_AVERAGE_SAMPLE_SIZE = 20;
+      public static final double INPUT_DEADBAND = 0.05;
+      public static final double INPUT_EXPO = 2; //stick^2, keeps the sign
+      public static final double SPRINT_SLEW_RATE = 6; //fraction of max speed per second, full speed in ~0.15s
+      public static final double SPRINT_FILTER_TIME_CONSTANT_SECONDS = 0.02;
+      public static final int PRECISION_AVERAGE_SAMPLES = 4;
+      public static final double PRECISION_FILTER_TIME_CONSTANT_SECONDS = 0.06;
       public static final double AUTO_BALANCE_TOLERANCE_DEGREES = 3;
       public static final double AUTO_BALANCE_ENGAGE_DEGREES = 10;
       public static final double MAX_AUTO_BALANCE_TRANSLATION_METERS = 5;
+      public static final boolean HIGH_RATE_ODOMETRY_ENABLED = false; //runs odometry on its own notifier instead of in periodic
+      public static final double HIGH_RATE_ODOMETRY_PERIOD_SECONDS = 0.004; //250hz, navx updates at 200hz
+      public static final int HIGH_RATE_ODOMETRY_THREAD_PRIORITY = 10;
+      public static final int POSE_HISTORY_SIZE = 400; //1.6s of poses at 250hz, 8s at 50hz
+      public static final double[] ODOMETRY_STD_DEVS = {0.1, 0.1, 0.01}; //x, y meters, theta radians
+      public static final double[] VISION_STD_DEVS = {0.9, 0.9, 0.9}; //x, y meters, theta radians
+
+      //vision constants
+      public static final double VISION_STD_DEV_REFERENCE_DISTANCE_METERS = 3; //VISION_STD_DEVS double at this distance
+      public static final double VISION_STD_DEV_REFERENCE_AREA = 0.5; //ta (percent of image) VISION_STD_DEVS are for
+      public static final double VISION_STD_DEV_MIN_AREA_FACTOR = 0.5;
+      public static final double VISION_STD_DEV_MAX_AREA_FACTOR = 4;
+      public static final double VISION_SINGLE_TAG_THETA_STD_DEV = 1000; //single tag heading is ambiguous, leave it to the gyro
+      public static final double VISION_FIELD_MARGIN_METERS = 0.25; //how far outside the field walls a pose can be
+      public static final double VISION_JUMP_TOLERANCE_METERS = 0.5; //allowed difference from odometry with no motion
+      public static final double VISION_ODOMETRY_DRIFT_METERS_PER_SECOND = 0.1; //allowed odometry drift since the last accepted pose
+      public static final double VISION_MAX_HEADING_ERROR_DEGREES = 15;
+      public static final double VISION_MAX_TILT_DEGREES = 5; //reject while on the charge station
+      public static final double VISION_STD_DEV_SPEED_GAIN = 0.5; //std dev multiplier per m/s, motion blur
+      public static final double VISION_STD_DEV_ROTATION_GAIN = 0.5; //std dev multiplier per rad/s
+      public static final String LIMELIGHT_UPS_NAME = "limelight-ups";
+      public static final int LIMELIGHT_UPS_PIPELINE = 0;
+      public static final double LIMELIGHT_UPS_X_METERS = 0; //camera lens from robot center, forward
+      public static final double LIMELIGHT_UPS_Y_METERS = 0; //left
+      public static final double LIMELIGHT_UPS_Z_METERS = 0.5; //up from the floor
+      public static final double LIMELIGHT_UPS_PITCH_DEGREES = 0;
+      public static final double LIMELIGHT_UPS_YAW_DEGREES = 0;
+
+      //drivetrain simulation constants
+      public static final int SIM_SUBSTEPS = 20; //physics steps per 20ms loop, the tire model needs ~1ms steps
+      public static final double SIM_ROBOT_MASS_KG = 56; //with bumpers and battery
+      public static final double SIM_ROBOT_MOMENT_OF_INERTIA = 6; //kg m^2
+      public static final double SIM_WHEEL_COEFFICIENT_OF_FRICTION = 1.1;
+      public static final double SIM_SLIP_VELOCITY_METERS_PER_SECOND = 0.2; //slip where the wheel reaches full friction
+      public static final double SIM_DRIVE_INERTIA_KG_METERS_SQUARED = 0.0025; //wheel plus drive motor, at the wheel
+      public static final double SIM_STEER_INERTIA_KG_METERS_SQUARED = 0.004; //module plus steer motor, at the module
+      public static final double SIM_STEER_P_VOLTS_PER_RADIAN = 12;
+
+      //simulated limelight constants
+      public static final double SIM_LIMELIGHT_HORIZONTAL_FOV_DEGREES = 59.6;
+      public static final double SIM_LIMELIGHT_VERTICAL_FOV_DEGREES = 45.7;
+      public static final double SIM_LIMELIGHT_MAX_DISTANCE_METERS = 6;
+      public static final double SIM_LIMELIGHT_PIPELINE_LATENCY_MS = 20;
+      public static final double SIM_LIMELIGHT_CAPTURE_LATENCY_MS = 11;
+      public static final double SIM_LIMELIGHT_XY_NOISE_METERS = 0.05; //std dev at 3 meters, grows with distance squared
+      public static final double SIM_LIMELIGHT_HEADING_NOISE_DEGREES = 2;
+      public static final double SIM_LIMELIGHT_DROP_RATE = 0.1; //fraction of frames that never arrive
+
+      //telemetry constants
+      public static final double TELEMETRY_LOG_PERIOD_SECONDS = 0.1; //how often buffered samples are written to the log
+      public static final double TELEMETRY_NT_PERIOD_SECONDS = 0.2; //how often the latest values are sent to the dashboard
   
       //PID constants
       public static final double ROTATION_PROPORTIONAL_COEFFICENT = 3.0;
@@ -105,13 +175,33 @@ public final class Constants {
       public static final double ARM_ENCODER_COUNT_ERROR = 1.0;
       public static final double MAX_ARM_VELOCITY = 0.5;
       public static final double MAX_ARM_ACCELERATION = MAX_ARM_VELOCITY * 2;
+      public static final double ARM_SETTLED_POSITION_TOLERANCE = 0.01; //rotations
+      public static final double ARM_SETTLED_VELOCITY_TOLERANCE = 0.05; //rotations per second
+      public static final int ARM_SETTLED_LOOPS = 3;
+      public static final double ARM_MOVE_TIMEOUT_SECONDS = 2.5; //MoveArmToPosition gives up waiting after this
       public static final double ARM_ENCODER_COUNT_MAX_DIFF = 0.1;
+      public static final boolean ARM_FEEDFORWARD_ENABLED = false; //ArmFeedforward plus a P term in volts, characterize with CharacterizeArm first
+      public static final double ARM_HORIZONTAL_POSITION = 0.55; //absolute encoder reading with the arm level, pointing out of the robot
+      public static final double ARM_KS = 0; //volts
+      public static final double ARM_KG = 0; //volts at level, sign is from the characterization
+      public static final double ARM_KV = 0; //volts per rad/s
+      public static final double ARM_KA = 0; //volts per rad/s^2
+      public static final double ARM_FEEDFORWARD_P_COEFF = 24; //volts per rotation of error
+      public static final double ARM_FEEDFORWARD_MAX_VELOCITY = 1.0; //rotations per second
+      public static final double ARM_FEEDFORWARD_MAX_ACCELERATION = 3.0; //rotations per second^2
+      public static final double ARM_CHARACTERIZATION_MIN_POSITION = ARM_SCORE_HIGH_POSITION; //travel the tests stay within
+      public static final double ARM_CHARACTERIZATION_MAX_POSITION = ARM_INSIDE_ROBOT_POSITION;
+      public static final double ARM_CHARACTERIZATION_RAMP_VOLTS_PER_SECOND = 0.5;
+      public static final double ARM_CHARACTERIZATION_STEP_VOLTS = 4;
 
       //intake constants 
       public static final int INTAKE_CURRENT_LIMIT = 20;
       public static final double INTAKE_SPEED = 1;
       public static final double INTAKE_SPEED_SLOW = 0.25;
       public static final int INTAKE_MOTOR = 15;
+      public static final double INTAKE_ACQUIRE_CURRENT = 15; //amps, a stalled roller above this is holding a piece
+      public static final double INTAKE_LOST_CURRENT = 6; //amps, a free roller below this is empty
+      public static final double INTAKE_HOLD_SPEED = 0.08; //keeps the piece in and the detector informed, 0 to just stop
 
       //floor arm constants
       public static final double FLOOR_ARM_POWER_SCALING = 0.1;
@@ -124,10 +214,57 @@ public final class Constants {
       public static final double FLOOR_ARM_SHOOTING_POSITION = 0.9872;
       public static final double FLOOR_ARM_MAX_POSITION = 0;
       public static final double FLOOR_ARM_MIN_POSITION = 0;
+      public static final double FLOOR_ARM_SETTLED_POSITION_TOLERANCE = 0.015; //rotations
+      public static final double FLOOR_ARM_SETTLED_VELOCITY_TOLERANCE = 0.08; //rotations per second
+      public static final int FLOOR_ARM_SETTLED_LOOPS = 3;
+      public static final double FLOOR_ARM_MOVE_TIMEOUT_SECONDS = 1.5; //FloorMoveArmToPostion gives up waiting after this
+      public static final double FLOOR_ARM_PID_AVERAGE_VELOCITY = 0.4; //rotations per second, preset move distance over FloorArm/Arrival Seconds with the PID
+
+      //superstructure, floor arm positions here are unwrapped to [0.5, 1.5) so ground sits past the encoder seam
+      public static final double SUPERSTRUCTURE_FLOOR_UNWRAP_START = 0.5;
+      //{arm min, arm max, floor min, floor max} rotations where the arms hit each other, with margin for overshoot
+      public static final double[][] SUPERSTRUCTURE_KEEP_OUT = {
+            {0.0, 0.72, 0.93, 1.5} //main arm out of the robot while the floor arm is out
+      };
+      public static final double SUPERSTRUCTURE_ARM_PLAN_MIN = 0.45; //joint space the planner searches
+      public static final double SUPERSTRUCTURE_ARM_PLAN_MAX = 0.9;
+      public static final double SUPERSTRUCTURE_FLOOR_PLAN_MIN = 0.8;
+      public static final double SUPERSTRUCTURE_FLOOR_PLAN_MAX = 1.3;
+      public static final int SUPERSTRUCTURE_PLAN_RESOLUTION = 46; //grid points per joint
+      public static final double SUPERSTRUCTURE_PRESET_TOLERANCE = 0.03; //rotations, within this of a preset uses its cached plan
+      public static final double SUPERSTRUCTURE_WAYPOINT_TOLERANCE = 0.02; //rotations
+      public static final double SUPERSTRUCTURE_TIMEOUT_SECONDS = 4;
+      public static final boolean FLOOR_ARM_STATE_SPACE_ENABLED = false; //Kalman filter and LQR instead of the PID, check FLOOR_ARM_VOLTAGE_DIRECTION first
+      public static final double FLOOR_ARM_VOLTAGE_DIRECTION = 1; //-1 if positive voltage moves the encoder reading down
+      public static final double FLOOR_ARM_GEARING = 60; //motor rotations per arm rotation
+      public static final double FLOOR_ARM_MOMENT_OF_INERTIA = 0.35; //kg m^2 about the pivot, from CAD
+      public static final double FLOOR_ARM_KG = 0.4; //volts to hold the arm level
+      public static final double FLOOR_ARM_HORIZONTAL_POSITION = 0.96; //absolute encoder reading with the arm level
+      public static final double FLOOR_ARM_MAX_VELOCITY = 1.2; //rotations per second
+      public static final double FLOOR_ARM_MAX_ACCELERATION = 4; //rotations per second^2
+      public static final double FLOOR_ARM_MAX_VOLTAGE = 12;
+      public static final double FLOOR_ARM_MODEL_POSITION_STDDEV = 0.015; //rad, how much to trust the model
+      public static final double FLOOR_ARM_MODEL_VELOCITY_STDDEV = 0.17; //rad/s
+      public static final double FLOOR_ARM_ENCODER_STDDEV = 0.01; //rad, duty cycle encoder noise
+      public static final double FLOOR_ARM_LQR_POSITION_TOLERANCE = 0.02; //rad, smaller is more aggressive
+      public static final double FLOOR_ARM_LQR_VELOCITY_TOLERANCE = 0.4; //rad/s
+      public static final double FLOOR_ARM_MEASUREMENT_DELAY_SECONDS = 0.025;
 
       //floor intake constants
       public static final double FLOOR_INTAKE_NORMAL_SPEED = 0.5;
       public static final double FLOOR_INTAKE_FAST_SPEED = 1;
       public static final int FLOOR_INTAKE_MOTOR = 16;
       public static final int FLOOR_INTAKE_CURRENT_LIMIT = 40;
+      public static final double FLOOR_INTAKE_ACQUIRE_CURRENT = 25; //amps
+      public static final double FLOOR_INTAKE_LOST_CURRENT = 8; //amps
+      public static final double FLOOR_INTAKE_HOLD_SPEED = 0.05;
+
+      //game piece detection, shared by both intakes
+      public static final double GAME_PIECE_SAMPLE_PERIOD_SECONDS = 0.01; //matches the current/velocity status frame
+      public static final double GAME_PIECE_FILTER_TIME_CONSTANT_SECONDS = 0.04;
+      public static final double GAME_PIECE_ACQUIRE_DEBOUNCE_SECONDS = 0.1;
+      public static final double GAME_PIECE_LOST_DEBOUNCE_SECONDS = 0.2;
+      public static final double GAME_PIECE_SPIN_UP_SECONDS = 0.25; //inrush when the rollers start or reverse is ignored
+      public static final double GAME_PIECE_STALL_SPEED_RATIO = 0.3; //fraction of free speed
+      public static final double GAME_PIECE_FREE_SPEED_RATIO = 0.7;
 }
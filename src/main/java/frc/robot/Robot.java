@@ -7,6 +7,8 @@ package frc.robot;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.Telemetry;
 
 /**
  * The VM is configured to automatically run this class, and to call the functions corresponding to
@@ -25,6 +27,8 @@ public class Robot extends TimedRobot {
    */
   @Override
   public void robotInit() {
+    Telemetry.start();
+
     // Instantiate our RobotContainer.  This will perform all our button bindings, and put our
     // autonomous chooser on the dashboard.
     m_robotContainer = new RobotContainer();
@@ -39,11 +43,36 @@ public class Robot extends TimedRobot {
    */
   @Override
   public void robotPeriodic() {
+    LoopProfiler.mark(LoopProfiler.MODE_PERIODIC);
+
+    // Take one snapshot of the sensors so every subsystem and command sees the same readings
+    m_robotContainer.updateSensors();
+    LoopProfiler.mark(LoopProfiler.SENSORS);
+
     // Runs the Scheduler.  This is responsible for polling buttons, adding newly-scheduled
     // commands, running already-scheduled commands, removing finished or interrupted commands,
     // and running subsystem periodic() methods.  This must be called from the robot's periodic
     // block in order for anything in the Command-based framework to work.
     CommandScheduler.getInstance().run();
+
+    // Everything after this until the end of the loop is SmartDashboard, LiveWindow and Shuffleboard
+    LoopProfiler.mark();
+  }
+
+  /**
+   * Profiles the whole loop, including the dashboard updates TimedRobot runs after robotPeriodic.
+   * Public so AutoBatchRunner can step the robot without TimedRobot's notifier.
+   */
+  @Override
+  public void loopFunc() {
+    LoopProfiler.beginLoop();
+    super.loopFunc();
+    LoopProfiler.mark(LoopProfiler.DASHBOARD);
+    LoopProfiler.endLoop();
+  }
+
+  public RobotContainer getRobotContainer() {
+    return m_robotContainer;
   }
 
   /** This function is called once each time the robot enters Disabled mode. */
@@ -53,6 +82,7 @@ public class Robot extends TimedRobot {
   @Override
   public void disabledPeriodic() {
     m_robotContainer.updateAutoSelectorPose();
+    m_robotContainer.precompileAutos();
   }
 
   /** This autonomous runs the autonomous command selected by your {@link RobotContainer} class. */
@@ -102,5 +132,7 @@ public class Robot extends TimedRobot {
 
   /** This function is called periodically whilst in simulation. */
   @Override
-  public void simulationPeriodic() {}
+  public void simulationPeriodic() {
+    m_robotContainer.simulationPeriodic();
+  }
 }
@@ -5,17 +5,22 @@
 package frc.robot;
 
 import edu.wpi.first.wpilibj.Joystick;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
 import edu.wpi.first.wpilibj2.command.ConditionalCommand;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.PrintCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import edu.wpi.first.wpilibj2.command.button.JoystickButton;
+import frc.robot.commands.arm.CharacterizeArm;
 import frc.robot.commands.arm.IncrementArm;
 import frc.robot.commands.arm.MoveArmToPosition;
 import frc.robot.commands.drive.DefaultDriveUpdatePose;
 import frc.robot.commands.drive.SetDriveRotationTarget;
 import frc.robot.commands.floorArm.FloorMoveArmToPostion;
+import frc.robot.commands.groups.MoveSuperstructure;
 import frc.robot.commands.intake.armIntake.DropCone;
 import frc.robot.commands.intake.armIntake.DropCube;
 import frc.robot.commands.intake.armIntake.IntakeCone;
@@ -23,24 +28,36 @@ import frc.robot.commands.intake.floor.FloorDrop;
 import frc.robot.commands.intake.floor.FloorPickup;
 import frc.robot.commands.vision.ChangeVisionPipeline;
 import frc.robot.commands.vision.ToggleLED;
+import frc.robot.sim.SimulatedLimelight;
 import frc.robot.subsystems.ArmSubsystem;
 import frc.robot.subsystems.DrivetrainSubsystem;
 import frc.robot.subsystems.FloorArmSubsystem;
 import frc.robot.subsystems.FloorIntake;
 import frc.robot.subsystems.Intake;
+import frc.robot.subsystems.LimelightCamera;
 import frc.robot.subsystems.Vision;
 import frc.robot.util.AutoGenerator;
 import frc.robot.util.DPadButton;
+import frc.robot.util.InputLatency;
 import frc.robot.util.JoystickModification;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.SensorSnapshot;
+import frc.robot.util.SuperstructurePlanner;
+import frc.robot.util.SuperstructurePlanner.Preset;
+import frc.robot.util.Telemetry;
 
 public class RobotContainer {
+  private final SensorSnapshot sensors = new SensorSnapshot();
   private final Vision vision = new Vision();
-  private final DrivetrainSubsystem drivetrainSubsystem = new DrivetrainSubsystem();
+  private final DrivetrainSubsystem drivetrainSubsystem = new DrivetrainSubsystem(sensors);
   private final Intake intake = new Intake();
   private final FloorIntake floorIntake = new FloorIntake();
-  private final FloorArmSubsystem floorArm = new FloorArmSubsystem();
-  private final ArmSubsystem arm = new ArmSubsystem();
+  private final FloorArmSubsystem floorArm = new FloorArmSubsystem(sensors);
+  private final ArmSubsystem arm = new ArmSubsystem(sensors);
+  // Plans between every pair of presets up front, so pressing one never waits on a search
+  private final SuperstructurePlanner superstructure = new SuperstructurePlanner();
   private final AutoGenerator autoGenerator = new AutoGenerator(drivetrainSubsystem, floorArm, arm, intake, floorIntake);
+  private SimulatedLimelight[] simulatedCameras;
 
   private final JoystickModification mod = new JoystickModification();
 
@@ -69,7 +86,20 @@ public class RobotContainer {
   private final DPadButton operatorDPadDown = new DPadButton(operatorController, DPadButton.Direction.DOWN);
 
   public RobotContainer() {
+    if(Robot.isSimulation()) {
+      LimelightCamera[] cameras = vision.getCameras();
+      simulatedCameras = new SimulatedLimelight[cameras.length];
+      for(int i = 0; i < cameras.length; i++) {
+        simulatedCameras[i] = new SimulatedLimelight(cameras[i], drivetrainSubsystem);
+      }
+    }
+
+    // Button bindings run in the order they were bound, so bracketing them times the whole poll
+    CommandScheduler.getInstance().getDefaultButtonLoop().bind(LoopProfiler::mark);
     configureBindings();
+    SmartDashboard.putData("Characterize Arm", new CharacterizeArm(arm));
+    CommandScheduler.getInstance().getDefaultButtonLoop().bind(() -> LoopProfiler.mark(LoopProfiler.BUTTONS));
+    CommandScheduler.getInstance().onCommandExecute(LoopProfiler::commandExecuted);
   }
 
   private boolean armIsExtended() {
@@ -88,12 +118,10 @@ public class RobotContainer {
         drivetrainSubsystem.setDefaultCommand(new DefaultDriveUpdatePose(
             vision, 
             drivetrainSubsystem,
-            () -> -mod.modifyAxis(driverController.getRawAxis(Constants.LEFT_Y_AXIS))
-            * DrivetrainSubsystem.MAX_VELOCITY_METERS_PER_SECOND,
-            () -> -mod.modifyAxis(driverController.getRawAxis(Constants.LEFT_X_AXIS))
-            * DrivetrainSubsystem.MAX_VELOCITY_METERS_PER_SECOND,
-            () -> -mod.modifyAxis(driverController.getRawAxis(Constants.RIGHT_X_AXIS))
-            * DrivetrainSubsystem.MAX_ANGULAR_VELOCITY_RADIANS_PER_SECOND,
+            // Shaped and scaled by DefaultDriveCommand's input chains
+            () -> InputLatency.stickRead(0, -driverController.getRawAxis(Constants.LEFT_Y_AXIS)),
+            () -> InputLatency.stickRead(1, -driverController.getRawAxis(Constants.LEFT_X_AXIS)),
+            () -> InputLatency.stickRead(2, -driverController.getRawAxis(Constants.RIGHT_X_AXIS)),
             () -> mod.modifyAxis(driverController.getRawAxis(Constants.RIGHT_TRIGGER)),
             () -> armIsExtended())
         );
@@ -133,35 +161,16 @@ public class RobotContainer {
     //operator
     {
         //floor arm
-        operatorControllerYButton.onTrue(
-          new SequentialCommandGroup(
-            new MoveArmToPosition(arm, Constants.ARM_INSIDE_ROBOT_POSITION),
-            new FloorMoveArmToPostion(floorArm, Constants.FLOOR_ARM_GROUND_POSITION)
-          )
-        );
-        operatorControllerBButton.onTrue(
-          new SequentialCommandGroup(
-            new MoveArmToPosition(arm, Constants.ARM_INSIDE_ROBOT_POSITION),
-            new FloorMoveArmToPostion(floorArm, Constants.FLOOR_ARM_SHOOTING_POSITION)
-          )
-        );
+        operatorControllerYButton.onTrue(new MoveSuperstructure(arm, floorArm, superstructure, Preset.FLOOR_GROUND));
+        operatorControllerBButton.onTrue(new MoveSuperstructure(arm, floorArm, superstructure, Preset.FLOOR_SHOOTING));
         operatorControllerAButton.onTrue(new FloorMoveArmToPostion(floorArm, Constants.FLOOR_ARM_INSIDE_ROBOT_POSITION));
 
         //primary arm
-        operatorDPadUp.onTrue(
-          new SequentialCommandGroup(
-            new FloorMoveArmToPostion(floorArm, Constants.FLOOR_ARM_INSIDE_ROBOT_POSITION),
-            new MoveArmToPosition(arm, Constants.ARM_SCORE_HIGH_POSITION)
-        ));
-        operatorDPadRight.onTrue(
-          new SequentialCommandGroup(
-            new FloorMoveArmToPostion(floorArm, Constants.FLOOR_ARM_INSIDE_ROBOT_POSITION),
-            new MoveArmToPosition(arm, Constants.ARM_SCORE_MID_POSITION)
-        ));
+        operatorDPadUp.onTrue(new MoveSuperstructure(arm, floorArm, superstructure, Preset.SCORE_HIGH));
+        operatorDPadRight.onTrue(new MoveSuperstructure(arm, floorArm, superstructure, Preset.SCORE_MID));
         operatorDPadLeft.onTrue(
           new SequentialCommandGroup(
-            new FloorMoveArmToPostion(floorArm, Constants.FLOOR_ARM_INSIDE_ROBOT_POSITION),
-            new MoveArmToPosition(arm, Constants.ARM_HUMAN_PLAYER_POSITION),
+            new MoveSuperstructure(arm, floorArm, superstructure, Preset.HUMAN_PLAYER),
             new IncrementArm(arm, () -> mod.modifyAxis(operatorController.getRawAxis(Constants.RIGHT_TRIGGER)))
           )
         );
@@ -197,6 +206,22 @@ public class RobotContainer {
     }
   }
 
+  /* Reads every sensor once for this loop, must run before the scheduler */
+  public void updateSensors() {
+    sensors.setTimestamp(Timer.getFPGATimestamp());
+    Telemetry.setTimestamp(sensors.getTimestamp());
+    drivetrainSubsystem.readSensors();
+    arm.readSensors();
+    floorArm.readSensors();
+  }
+
+  /* Publishes the simulated camera frames, read by Vision next loop */
+  public void simulationPeriodic() {
+    for(SimulatedLimelight camera : simulatedCameras) {
+      camera.update();
+    }
+  }
+
   public Command getAutonomousCommand() {
     return autoGenerator.getAutoCommand();
   }
@@ -205,6 +230,18 @@ public class RobotContainer {
     autoGenerator.updateSelectorPose();
   }
 
+  public void precompileAutos() {
+    autoGenerator.precompileAutos();
+  }
+
+  public AutoGenerator getAutoGenerator() {
+    return autoGenerator;
+  }
+
+  public DrivetrainSubsystem getDrivetrain() {
+    return drivetrainSubsystem;
+  }
+
   public void disableDrivetrainTargets() {
     drivetrainSubsystem.setBalanceTarget(null);
     drivetrainSubsystem.setRotationTarget(null);
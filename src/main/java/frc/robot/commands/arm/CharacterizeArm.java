@@ -0,0 +1,52 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands.arm;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.subsystems.ArmSubsystem;
+import frc.robot.util.ArmCharacterizer;
+
+/**
+ * Runs the arm's characterization tests and puts the fitted gains on the dashboard, to be copied
+ * into ARM_KS/KG/KV/KA. The arm swings between the scoring and stowed positions under open loop
+ * voltage, so run it on blocks with nothing in the way.
+ */
+public class CharacterizeArm extends CommandBase {
+  private static final String[] GAIN_NAMES = { "kS", "kG", "kV", "kA" };
+
+  private ArmSubsystem arm;
+  private ArmCharacterizer characterizer;
+
+  public CharacterizeArm(ArmSubsystem arm) {
+    this.arm = arm;
+    addRequirements(arm);
+  }
+
+  // Called when the command is initially scheduled.
+  @Override
+  public void initialize() {
+    characterizer = arm.startCharacterization();
+  }
+
+  // Called once the command ends or is interrupted.
+  @Override
+  public void end(boolean interrupted) {
+    arm.stopCharacterization();
+    double[] gains = characterizer.getGains();
+    SmartDashboard.putBoolean("Arm Characterization/Fit", gains != null);
+    if (gains != null) {
+      for (int i = 0; i < GAIN_NAMES.length; i++) {
+        SmartDashboard.putNumber("Arm Characterization/" + GAIN_NAMES[i], gains[i]);
+      }
+    }
+  }
+
+  // Returns true when the command should end.
+  @Override
+  public boolean isFinished() {
+    return characterizer.isDone();
+  }
+}
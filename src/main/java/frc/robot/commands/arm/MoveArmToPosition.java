@@ -4,12 +4,15 @@
 
 package frc.robot.commands.arm;
 
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.Constants;
 import frc.robot.subsystems.ArmSubsystem;
 
 public class MoveArmToPosition extends CommandBase {
   private ArmSubsystem arm;
   private double targetPosition;
+  private final Timer timer = new Timer();
   /** Creates a new MoveArmToPostion. */
   public MoveArmToPosition(ArmSubsystem arm, double targetPosition) {
     // Use addRequirements() here to declare subsystem dependencies.
@@ -23,6 +26,7 @@ public class MoveArmToPosition extends CommandBase {
   @Override
   public void initialize() {
     arm.setTargetPosition(targetPosition);
+    timer.restart();
   }
 
   // Called every time the scheduler runs while the command is scheduled.
@@ -36,6 +40,7 @@ public class MoveArmToPosition extends CommandBase {
   // Returns true when the command should end.
   @Override
   public boolean isFinished() {
-    return true;
+    // Finishes once the arm has settled at the target, the timeout is for when it is blocked
+    return arm.isAtTarget() || timer.hasElapsed(Constants.ARM_MOVE_TIMEOUT_SECONDS);
   }
 }
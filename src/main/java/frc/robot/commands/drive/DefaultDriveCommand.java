@@ -7,6 +7,9 @@ import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.wpilibj2.command.CommandBase;
 import frc.robot.Constants;
 import frc.robot.subsystems.DrivetrainSubsystem;
+import frc.robot.util.InputLatency;
+import frc.robot.util.InputShaper;
+import frc.robot.util.Telemetry;
 
 public class DefaultDriveCommand extends CommandBase {
     private final DrivetrainSubsystem drivetrainSubsystem;
@@ -17,16 +20,24 @@ public class DefaultDriveCommand extends CommandBase {
     private final DoubleSupplier triggerSupplier;
     private final BooleanSupplier forceSlowSupplier;
 
-    private double x;
-    private double y;
-    private double rotation;
-    private double trigger;
-    private boolean forceSlow;
+    private final Telemetry.DoubleSignal latencySignal = Telemetry.doubleSignal("/SmartDashboard/Drive Input/Latency ms");
+    private final Telemetry.BooleanSignal precisionSignal = Telemetry.booleanSignal("/SmartDashboard/Drive Input/Precision");
 
-    private double[] rollingInputX = new double[Constants.INPUT_ROLLING_AVERAGE_SAMPLE_SIZE];
-    private double[] rollingInputY = new double[Constants.INPUT_ROLLING_AVERAGE_SAMPLE_SIZE];
-    private int index = 0;
+    // Fast response for crossing the field
+    private final InputShaper sprintX = sprintTranslation();
+    private final InputShaper sprintY = sprintTranslation();
+    private final InputShaper sprintRotation = rotation(Constants.DRIVE_SPEED_SCALER * Constants.SLOW_ROTATION_SCALING);
 
+    // Slower and smoother while the arm is out, for lining up to score
+    private final InputShaper precisionX = precisionTranslation();
+    private final InputShaper precisionY = precisionTranslation();
+    private final InputShaper precisionRotation = rotation(
+        Constants.DRIVE_SPEED_SCALER * Constants.SLOW_ROTATION_SCALING * Constants.SLOW_DRIVE_SCALING);
+
+    /**
+     * The stick suppliers are raw axes from -1 to 1, already flipped to field relative directions.
+     * Deadband, expo and scaling happen here, in the active input shaping chain.
+     */
     public DefaultDriveCommand(DrivetrainSubsystem drivetrainSubsystem, DoubleSupplier translationXSupplier,
             DoubleSupplier translationYSupplier, DoubleSupplier rotationSupplier, DoubleSupplier triggerSupplier, BooleanSupplier forceSlowSupplier) {
         this.drivetrainSubsystem = drivetrainSubsystem;
@@ -39,43 +50,74 @@ public class DefaultDriveCommand extends CommandBase {
         addRequirements(drivetrainSubsystem);
     }
 
+    private static InputShaper sprintTranslation() {
+        return new InputShaper(
+            InputShaper.deadband(Constants.INPUT_DEADBAND),
+            InputShaper.expo(Constants.INPUT_EXPO),
+            InputShaper.scale(Constants.DRIVE_SPEED_SCALER),
+            InputShaper.slewRate(Constants.SPRINT_SLEW_RATE),
+            InputShaper.onePole(Constants.SPRINT_FILTER_TIME_CONSTANT_SECONDS));
+    }
+
+    private static InputShaper precisionTranslation() {
+        return new InputShaper(
+            InputShaper.deadband(Constants.INPUT_DEADBAND),
+            InputShaper.expo(Constants.INPUT_EXPO),
+            InputShaper.scale(Constants.DRIVE_SPEED_SCALER * Constants.SLOW_DRIVE_SCALING),
+            InputShaper.movingAverage(Constants.PRECISION_AVERAGE_SAMPLES),
+            InputShaper.onePole(Constants.PRECISION_FILTER_TIME_CONSTANT_SECONDS));
+    }
+
+    private static InputShaper rotation(double scale) {
+        return new InputShaper(
+            InputShaper.deadband(Constants.INPUT_DEADBAND),
+            InputShaper.expo(Constants.INPUT_EXPO),
+            InputShaper.scale(scale));
+    }
+
+    @Override
+    public void initialize() {
+        sprintX.reset(0);
+        sprintY.reset(0);
+        precisionX.reset(0);
+        precisionY.reset(0);
+    }
+
     @Override
     public void execute() {
-        x = translationXSupplier.getAsDouble();
-        y = translationYSupplier.getAsDouble();
-        rotation = rotationSupplier.getAsDouble()*Constants.SLOW_ROTATION_SCALING;
-        trigger = triggerSupplier.getAsDouble();
-        forceSlow = forceSlowSupplier.getAsBoolean();
+        double x = translationXSupplier.getAsDouble();
+        double y = translationYSupplier.getAsDouble();
+        double rotation = rotationSupplier.getAsDouble();
+        boolean precision = forceSlowSupplier.getAsBoolean() && triggerSupplier.getAsDouble() == 0;
 
-        if (x != 0 || y != 0) {
+        if (Math.abs(x) > Constants.INPUT_DEADBAND || Math.abs(y) > Constants.INPUT_DEADBAND) {
             drivetrainSubsystem.setBalanceTarget(null);
             drivetrainSubsystem.setTranslationTarget(null);
         }
-    
-        if (rotation != 0) {
+
+        if (Math.abs(rotation) > Constants.INPUT_DEADBAND) {
             drivetrainSubsystem.setRotationTarget(null);
         }
-        rollingInputX[index] = x;
-        rollingInputY[index] = y;
-        index++;
-        if(index == Constants.INPUT_ROLLING_AVERAGE_SAMPLE_SIZE) {
-            index = 0;
-        }
 
-        if(forceSlow && trigger == 0) {
-            drivetrainSubsystem.drive(getAverage(rollingInputX) * Constants.SLOW_DRIVE_SCALING, getAverage(rollingInputY) * Constants.SLOW_DRIVE_SCALING, rotation * Constants.SLOW_DRIVE_SCALING);
-        } else {
-            drivetrainSubsystem.drive(getAverage(rollingInputX), getAverage(rollingInputY), rotation);
-        }
-        
-    }
+        // Both chains run every loop so switching between them doesn't start from stale filter state
+        sprintX.calculate(x);
+        sprintY.calculate(y);
+        sprintRotation.calculate(rotation);
+        precisionX.calculate(x);
+        precisionY.calculate(y);
+        precisionRotation.calculate(rotation);
 
-    private double getAverage(double[] arr) {
-        double rtn = 0;
-        for(double i : arr) {
-            rtn+=i;
-        }
-        return rtn / arr.length;
+        InputShaper shapedX = precision ? precisionX : sprintX;
+        InputShaper shapedY = precision ? precisionY : sprintY;
+        InputShaper shapedRotation = precision ? precisionRotation : sprintRotation;
+        InputLatency.shaped(precision ? InputLatency.PRECISION : InputLatency.SPRINT);
+        drivetrainSubsystem.drive(
+            shapedX.getOutput() * DrivetrainSubsystem.MAX_VELOCITY_METERS_PER_SECOND,
+            shapedY.getOutput() * DrivetrainSubsystem.MAX_VELOCITY_METERS_PER_SECOND,
+            shapedRotation.getOutput() * DrivetrainSubsystem.MAX_ANGULAR_VELOCITY_RADIANS_PER_SECOND);
+
+        latencySignal.set(Math.max(shapedX.getLatencySeconds(), shapedY.getLatencySeconds()) * 1000);
+        precisionSignal.set(precision);
     }
 
     @Override
@@ -4,12 +4,15 @@
 
 package frc.robot.commands.floorArm;
 
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.Constants;
 import frc.robot.subsystems.FloorArmSubsystem;
 
 public class FloorMoveArmToPostion extends CommandBase {
   private FloorArmSubsystem floorArm;
   private double targetPosition;
+  private final Timer timer = new Timer();
   /** Creates a new MoveArmToPostion. */
   public FloorMoveArmToPostion(FloorArmSubsystem floorArm, double targetPosition) {
     // Use addRequirements() here to declare subsystem dependencies.
@@ -23,6 +26,7 @@ public class FloorMoveArmToPostion extends CommandBase {
   @Override
   public void initialize() {
     floorArm.setTargetPosition(targetPosition);
+    timer.restart();
   }
 
   // Called every time the scheduler runs while the command is scheduled.
@@ -38,6 +42,7 @@ public class FloorMoveArmToPostion extends CommandBase {
   // Returns true when the command should end.
   @Override
   public boolean isFinished() {
-    return true;
+    // Finishes once the arm has settled at the target, the timeout is for when it is blocked
+    return floorArm.isAtTarget() || timer.hasElapsed(Constants.FLOOR_ARM_MOVE_TIMEOUT_SECONDS);
   }
 }
@@ -19,11 +19,9 @@ public class ExtendAndScoreCone extends SequentialCommandGroup {
   public ExtendAndScoreCone(DrivetrainSubsystem drive, FloorArmSubsystem floorArm, ArmSubsystem arm, Intake intake) {
     addCommands(
       new FloorMoveArmToPostion(floorArm, Constants.FLOOR_ARM_SHOOTING_POSITION),
-      new WaitCommand(0.5),
       new FloorMoveArmToPostion(floorArm, Constants.FLOOR_ARM_INSIDE_ROBOT_POSITION),
       new MoveArmToPosition(arm, Constants.ARM_SCORE_HIGH_POSITION),
       new InstantCommand(() -> intake.conePickup(0.5)),
-      new WaitCommand(1),
       driveDistance(drive, 0.5, -1),
       new WaitCommand(1),
       new DropCone(intake).withTimeout(0.5),
@@ -0,0 +1,102 @@
+package frc.robot.commands.groups;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.Constants;
+import frc.robot.subsystems.ArmSubsystem;
+import frc.robot.subsystems.FloorArmSubsystem;
+import frc.robot.util.SuperstructurePlanner;
+import frc.robot.util.SuperstructurePlanner.Plan;
+import frc.robot.util.SuperstructurePlanner.Preset;
+import frc.robot.util.Telemetry;
+
+/**
+ * Moves the arm and the floor arm to a preset together, following a SuperstructurePlanner plan.
+ * It moves on to the next waypoint once the arms reach the current one, or as soon as going
+ * straight to the next one from where they are is clear. It finishes when both have settled at the
+ * preset.
+ */
+public class MoveSuperstructure extends CommandBase {
+  private static final Telemetry.DoubleSignal transitionSignal = Telemetry.doubleSignal("/Shuffleboard/Superstructure/Transition Seconds");
+  private static final Telemetry.DoubleSignal plannedSignal = Telemetry.doubleSignal("/Shuffleboard/Superstructure/Planned Seconds");
+  private static final Telemetry.DoubleSignal sequentialSignal = Telemetry.doubleSignal("/Shuffleboard/Superstructure/Sequential Seconds");
+
+  private final ArmSubsystem arm;
+  private final FloorArmSubsystem floorArm;
+  private final SuperstructurePlanner planner;
+  private final Preset target;
+  private final Timer timer = new Timer();
+  private final double[] current = new double[2];
+  private Preset from;
+  private Plan plan;
+  private int waypoint;
+
+  public MoveSuperstructure(ArmSubsystem arm, FloorArmSubsystem floorArm, SuperstructurePlanner planner, Preset target) {
+    this.arm = arm;
+    this.floorArm = floorArm;
+    this.planner = planner;
+    this.target = target;
+    addRequirements(arm, floorArm);
+  }
+
+  private void readCurrent() {
+    current[0] = arm.getPosition();
+    current[1] = SuperstructurePlanner.toPlanFloor(floorArm.getPosition());
+  }
+
+  private void setTargets(double[] position) {
+    arm.setTargetPosition(position[0]);
+    floorArm.setTargetPosition(SuperstructurePlanner.toFloorPosition(position[1]));
+  }
+
+  // Called when the command is initially scheduled.
+  @Override
+  public void initialize() {
+    readCurrent();
+    from = SuperstructurePlanner.nearestPreset(current[0], current[1]);
+    plan = planner.getPlan(current[0], current[1], target);
+    plannedSignal.set(plan.seconds);
+    sequentialSignal.set(plan.sequentialSeconds);
+    waypoint = 1;
+    setTargets(plan.waypoints[waypoint]);
+    timer.restart();
+  }
+
+  // Called every time the scheduler runs while the command is scheduled.
+  @Override
+  public void execute() {
+    readCurrent();
+    double[][] waypoints = plan.waypoints;
+    while (waypoint < waypoints.length - 1) {
+      double[] next = waypoints[waypoint];
+      boolean reached = Math.abs(current[0] - next[0]) <= Constants.SUPERSTRUCTURE_WAYPOINT_TOLERANCE
+        && Math.abs(current[1] - next[1]) <= Constants.SUPERSTRUCTURE_WAYPOINT_TOLERANCE;
+      if (!reached && !SuperstructurePlanner.isClear(current, waypoints[waypoint + 1])) {
+        break;
+      }
+      waypoint++;
+      setTargets(waypoints[waypoint]);
+    }
+  }
+
+  // Called once the command ends or is interrupted.
+  @Override
+  public void end(boolean interrupted) {
+    if (interrupted) {
+      return;
+    }
+    double seconds = timer.get();
+    transitionSignal.set(seconds);
+    if (from != null) {
+      SmartDashboard.putNumber("Superstructure/" + from + " To " + target, seconds);
+    }
+  }
+
+  // Returns true when the command should end.
+  @Override
+  public boolean isFinished() {
+    return (waypoint == plan.waypoints.length - 1 && arm.isAtTarget() && floorArm.isAtTarget())
+      || timer.hasElapsed(Constants.SUPERSTRUCTURE_TIMEOUT_SECONDS);
+  }
+}
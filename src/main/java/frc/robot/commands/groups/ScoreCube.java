@@ -1,7 +1,6 @@
 package frc.robot.commands.groups;
 
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
-import edu.wpi.first.wpilibj2.command.WaitCommand;
 import frc.robot.Constants;
 import frc.robot.commands.floorArm.FloorMoveArmToPostion;
 import frc.robot.commands.intake.floor.FloorDrop;
@@ -14,10 +13,8 @@ public class ScoreCube extends SequentialCommandGroup {
   public ScoreCube(DrivetrainSubsystem drive, FloorArmSubsystem floorArm, FloorIntake intake) {
     addCommands(
       new FloorMoveArmToPostion(floorArm, Constants.FLOOR_ARM_SHOOTING_POSITION),
-      new WaitCommand(0.5),
       new FloorDrop(intake, Constants.FLOOR_INTAKE_FAST_SPEED).withTimeout(1),
-      new FloorMoveArmToPostion(floorArm, Constants.FLOOR_ARM_INSIDE_ROBOT_POSITION),
-      new WaitCommand(0.5)
+      new FloorMoveArmToPostion(floorArm, Constants.FLOOR_ARM_INSIDE_ROBOT_POSITION)
     );
   }
 }
@@ -2,7 +2,6 @@ package frc.robot.commands.groups;
 
 import edu.wpi.first.wpilibj2.command.ConditionalCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
-import edu.wpi.first.wpilibj2.command.WaitCommand;
 import frc.robot.Constants;
 import frc.robot.commands.floorArm.FloorMoveArmToPostion;
 import frc.robot.commands.intake.armIntake.DropCone;
@@ -16,7 +15,6 @@ public class ScoreLow extends SequentialCommandGroup {
   public ScoreLow(DrivetrainSubsystem drive, FloorArmSubsystem floorArm, Intake intake, boolean scoreCone) {
     addCommands(
       new FloorMoveArmToPostion(floorArm, Constants.FLOOR_ARM_SHOOTING_POSITION),
-      new WaitCommand(0.5),
       new FloorMoveArmToPostion(floorArm, Constants.FLOOR_ARM_INSIDE_ROBOT_POSITION),
       new ConditionalCommand(new DropCone(intake).withTimeout(0.5), new DropCube(intake).withTimeout(0.5),() -> scoreCone)
     );
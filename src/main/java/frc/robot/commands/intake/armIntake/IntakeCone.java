@@ -38,12 +38,17 @@ public class IntakeCone extends CommandBase {
   // Called once the command ends or is interrupted.
   @Override
   public void end(boolean interrupted) {
-    intake.intakeStop();
+    if (intake.hasGamePiece().getAsBoolean()) {
+      intake.holdCone();
+    } else {
+      intake.intakeStop();
+    }
   }
 
   // Returns true when the command should end.
   @Override
   public boolean isFinished() {
-    return false;
+    // Stops as soon as the cone is in, instead of when the button is let go
+    return intake.hasGamePiece().getAsBoolean();
   }
 }
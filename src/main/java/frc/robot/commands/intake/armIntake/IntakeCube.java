@@ -23,18 +23,23 @@ public class IntakeCube extends CommandBase {
   // Called every time the scheduler runs while the command is scheduled.
   @Override
   public void execute() {
-    intake.coneDrop(Constants.INTAKE_SPEED);
+    intake.cubePickup(Constants.INTAKE_SPEED);
   }
 
   // Called once the command ends or is interrupted.
   @Override
   public void end(boolean interrupted) {
-    intake.intakeStop();
+    if (intake.hasGamePiece().getAsBoolean()) {
+      intake.holdCube();
+    } else {
+      intake.intakeStop();
+    }
   }
 
   // Returns true when the command should end.
   @Override
   public boolean isFinished() {
-    return false;
+    // Stops as soon as the cube is in, instead of when the button is let go
+    return intake.hasGamePiece().getAsBoolean();
   }
 }
@@ -29,12 +29,17 @@ public class FloorPickup extends CommandBase {
   // Called once the command ends or is interrupted.
   @Override
   public void end(boolean interrupted) {
-    floorIntake.intakeStop();
+    if (floorIntake.hasGamePiece().getAsBoolean()) {
+      floorIntake.holdPiece();
+    } else {
+      floorIntake.intakeStop();
+    }
   }
 
   // Returns true when the command should end.
   @Override
   public boolean isFinished() {
-    return false;
+    // Stops as soon as the cube is in, instead of when the button is let go
+    return floorIntake.hasGamePiece().getAsBoolean();
   }
 }
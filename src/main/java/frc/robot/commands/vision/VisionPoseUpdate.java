@@ -7,22 +7,30 @@ package frc.robot.commands.vision;
 import edu.wpi.first.wpilibj2.command.CommandBase;
 import frc.robot.subsystems.DrivetrainSubsystem;
 import frc.robot.subsystems.Vision;
+import frc.robot.util.VisionMeasurementFilter;
 
 public class VisionPoseUpdate extends CommandBase {
 
   private Vision vision;
   private DrivetrainSubsystem drivetrainSubsystem;
+  private VisionMeasurementFilter filter;
 
   public VisionPoseUpdate(Vision vision, DrivetrainSubsystem drivetrainSubsystem) {
     this.vision = vision;
     this.drivetrainSubsystem = drivetrainSubsystem;
+    filter = new VisionMeasurementFilter(drivetrainSubsystem);
   }
   
   @Override
   public void execute() {
-    // if(vision.hasTarget()) {
-    //   drivetrainSubsystem.resetPose(vision.getBotpose());
-    // }
+    // Every camera's frames since last loop, oldest first, each one is only handed to us once
+    for(int i = 0; i < vision.getFrameCount(); i++) {
+      Vision.Frame frame = vision.getFrame(i);
+      if(frame.hasTarget() && filter.test(frame)) {
+        drivetrainSubsystem.addVisionMeasurement(frame.getX(), frame.getY(), frame.getRotationRadians(), frame.getTimestamp(),
+          filter.getXYStdDev(), filter.getThetaStdDev());
+      }
+    }
   }
 
   @Override
@@ -0,0 +1,259 @@
+package frc.robot.sim;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.wpi.first.hal.AllianceStationID;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Robot;
+import frc.robot.RobotContainer;
+import frc.robot.subsystems.DrivetrainSubsystem;
+import frc.robot.util.AutoGenerator;
+import frc.robot.util.AutoGenerator.PathActions;
+import frc.robot.util.AutoGenerator.StartActions;
+import frc.robot.util.AutoGenerator.StartLocation;
+
+/**
+ * Runs every autonomous combination (start location x path action x start action) in simulation
+ * without the GUI or driver station, as fast as the CPU allows. Each auto runs in its own JVM so
+ * the robot code's static state (CommandScheduler, HAL, NetworkTables) starts fresh, and as many
+ * run at once as there are cores. Run with ./gradlew runAutos.
+ *
+ * <p>A worker steps the robot loop directly and advances the paused HAL clock with
+ * SimHooks.stepTiming, so 15 s of auto takes as long as the loops take to compute. It reports the
+ * simulated robot's final pose, how far the estimate is from it, path tracking error from
+ * PathTracker, and when the auto command finished. Autos whose path file is missing, that use
+ * event names the event map doesn't bind, or that don't finish in time are flagged, and the
+ * process exits with 1 if anything was flagged.
+ */
+public class AutoBatchRunner {
+    private static final String WORKER = "--worker";
+    private static final String RESULT_PREFIX = "AUTO_RESULT\t";
+    private static final String[] COLUMNS = {
+        "auto", "status", "finished s", "x", "y", "heading deg", "estimate error m",
+        "max tracking m", "rms tracking m", "max heading deg", "unbound events"
+    };
+    private static final double AUTO_LENGTH_SECONDS = 15.0;
+    private static final int DISABLED_LOOPS = 10;
+
+    private static final String OK = "OK";
+    private static final String MISSING_PATH = "MISSING_PATH";
+    private static final String DID_NOT_FINISH = "DID_NOT_FINISH";
+    private static final String ERROR = "ERROR";
+
+    /** args[0] is an optional CSV file to write the results to. */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 4 && args[0].equals(WORKER)) {
+            runWorker(StartLocation.valueOf(args[1]), PathActions.valueOf(args[2]), StartActions.valueOf(args[3]));
+            // The robot's notifier threads would keep the JVM alive
+            System.exit(0);
+        }
+
+        int workers = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<String[]>> results = new ArrayList<Future<String[]>>();
+        long start = System.nanoTime();
+        for (StartLocation location : StartLocation.values()) {
+            for (PathActions pathAction : PathActions.values()) {
+                for (StartActions startAction : StartActions.values()) {
+                    results.add(pool.submit(() -> runInWorker(location, pathAction, startAction)));
+                }
+            }
+        }
+
+        List<String[]> rows = new ArrayList<String[]>();
+        for (Future<String[]> result : results) {
+            rows.add(result.get());
+        }
+        pool.shutdown();
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+
+        int flagged = 0;
+        for (String[] row : rows) {
+            if (!row[1].equals(OK) || !row[10].isEmpty()) {
+                flagged++;
+            }
+        }
+        printTable(rows);
+        System.out.printf("%d autos in %.1f s on %d workers (%.0fx real time), %d flagged%n",
+            rows.size(), wallSeconds, workers, rows.size() * AUTO_LENGTH_SECONDS / wallSeconds, flagged);
+
+        if (args.length > 0) {
+            writeCsv(new File(args[0]), rows);
+        }
+        System.exit(flagged == 0 ? 0 : 1);
+    }
+
+    /* Launches a JVM running one auto and parses its result line */
+    private static String[] runInWorker(StartLocation location, PathActions pathAction, StartActions startAction)
+            throws IOException, InterruptedException {
+        String name = autoName(location, pathAction, startAction);
+        List<String> command = new ArrayList<String>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Djava.library.path=" + System.getProperty("java.library.path"));
+        command.add(AutoBatchRunner.class.getName());
+        command.add(WORKER);
+        command.add(location.name());
+        command.add(pathAction.name());
+        command.add(startAction.name());
+
+        Process process = new ProcessBuilder(command)
+            .directory(new File(System.getProperty("user.dir")))
+            .redirectErrorStream(true)
+            .start();
+        String[] row = null;
+        String lastLine = "";
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    row = line.substring(RESULT_PREFIX.length()).split("\t", -1);
+                } else if (!line.isBlank()) {
+                    lastLine = line;
+                }
+            }
+        }
+        int exitCode = process.waitFor();
+        if (row == null || row.length != COLUMNS.length) {
+            row = new String[COLUMNS.length];
+            Arrays.fill(row, "");
+            row[0] = name;
+            row[1] = ERROR;
+            // Last thing the worker printed, usually the exception
+            row[10] = "exit " + exitCode + ": " + lastLine;
+        }
+        return row;
+    }
+
+    private static void runWorker(StartLocation location, PathActions pathAction, StartActions startAction) {
+        HAL.initialize(500, 0);
+        SimHooks.pauseTiming();
+        DriverStationSim.setDsAttached(true);
+        DriverStationSim.setAllianceStationId(AllianceStationID.Blue1);
+        DriverStationSim.setAutonomous(false);
+        DriverStationSim.setEnabled(false);
+        DriverStationSim.notifyNewData();
+
+        // Same order as TimedRobot.startCompetition, minus the notifier
+        Robot robot = new Robot();
+        robot.robotInit();
+        robot.simulationInit();
+        RobotContainer container = robot.getRobotContainer();
+        AutoGenerator autos = container.getAutoGenerator();
+        DrivetrainSubsystem drivetrain = container.getDrivetrain();
+        autos.select(location, pathAction, startAction);
+
+        String[] row = new String[COLUMNS.length];
+        Arrays.fill(row, "");
+        row[0] = autoName(location, pathAction, startAction);
+        row[10] = String.join(";", autos.getUnboundEvents(location, pathAction));
+        if (!autos.hasPath(location, pathAction)) {
+            row[1] = MISSING_PATH;
+            printResult(row);
+            return;
+        }
+
+        for (int i = 0; i < DISABLED_LOOPS; i++) {
+            step(robot);
+        }
+
+        // Already built while disabled, this is the instance autonomousInit schedules
+        Command auto = container.getAutonomousCommand();
+        autos.getPathTracker().resetTotals();
+        DriverStationSim.setAutonomous(true);
+        DriverStationSim.setEnabled(true);
+        DriverStationSim.notifyNewData();
+
+        double start = Timer.getFPGATimestamp();
+        double finished = -1;
+        while (Timer.getFPGATimestamp() - start < AUTO_LENGTH_SECONDS) {
+            step(robot);
+            if (!auto.isScheduled()) {
+                finished = Timer.getFPGATimestamp() - start;
+                break;
+            }
+        }
+
+        double[] truth = new double[3];
+        double[] estimate = new double[4];
+        drivetrain.getSimulatedPose(truth);
+        drivetrain.getPose(estimate);
+        row[1] = finished >= 0 ? OK : DID_NOT_FINISH;
+        row[2] = finished >= 0 ? format(finished) : "";
+        row[3] = format(truth[0]);
+        row[4] = format(truth[1]);
+        row[5] = format(Math.toDegrees(truth[2]));
+        row[6] = format(Math.hypot(estimate[0] - truth[0], estimate[1] - truth[1]));
+        row[7] = format(autos.getPathTracker().getTotalMaxPositionError());
+        row[8] = format(autos.getPathTracker().getTotalRmsPositionError());
+        row[9] = format(autos.getPathTracker().getTotalMaxHeadingError());
+        printResult(row);
+    }
+
+    /* One robot loop, then the clock moves on as if the loop took exactly one period */
+    private static void step(Robot robot) {
+        robot.loopFunc();
+        SimHooks.stepTiming(Robot.kDefaultPeriod);
+    }
+
+    private static String autoName(StartLocation location, PathActions pathAction, StartActions startAction) {
+        return pathAction.value + location.value + " " + startAction.value;
+    }
+
+    private static String format(double value) {
+        return String.format("%.3f", value);
+    }
+
+    private static void printResult(String[] row) {
+        System.out.println(RESULT_PREFIX + String.join("\t", row));
+        System.out.flush();
+    }
+
+    private static void printTable(List<String[]> rows) {
+        int[] widths = new int[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            widths[i] = COLUMNS[i].length();
+            for (String[] row : rows) {
+                widths[i] = Math.max(widths[i], row[i].length());
+            }
+        }
+        printRow(COLUMNS, widths);
+        for (String[] row : rows) {
+            printRow(row, widths);
+        }
+    }
+
+    private static void printRow(String[] row, int[] widths) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < row.length; i++) {
+            line.append(String.format("%-" + widths[i] + "s  ", row[i]));
+        }
+        System.out.println(line.toString().stripTrailing());
+    }
+
+    private static void writeCsv(File file, List<String[]> rows) throws IOException {
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        try (PrintWriter out = new PrintWriter(file, StandardCharsets.UTF_8)) {
+            out.println(String.join(",", COLUMNS));
+            for (String[] row : rows) {
+                out.println(String.join(",", row));
+            }
+        }
+    }
+}
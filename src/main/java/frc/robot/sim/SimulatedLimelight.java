@@ -0,0 +1,207 @@
+package frc.robot.sim;
+
+import java.util.Random;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import frc.robot.Constants;
+import frc.robot.subsystems.DrivetrainSubsystem;
+import frc.robot.subsystems.LimelightCamera;
+import frc.robot.util.FieldTags;
+
+/**
+ * Stands in for a Limelight in simulation. Each loop it looks at the AprilTags from WPILib's 2023
+ * field layout from the drivetrain's ground truth pose, and publishes tv, tid, tx, ta, tl, cl,
+ * botpose_wpiblue and botpose_wpired to the camera's table like the real one does. The pose is
+ * the one from the capture time (SIM_LIMELIGHT_*_LATENCY_MS ago) with noise that grows with
+ * distance, and some frames are dropped.
+ */
+public class SimulatedLimelight {
+    private static final double TAG_SIZE_METERS = 0.1524;
+    private static final int HISTORY_SIZE = 32;
+
+    private final DrivetrainSubsystem drivetrain;
+    private final Transform3d robotToCamera;
+    private final Random random = new Random(2023);
+
+    private final DoublePublisher targetValid;
+    private final DoublePublisher targetID;
+    private final DoublePublisher targetXOffset;
+    private final DoublePublisher targetArea;
+    private final DoublePublisher pipelineLatency;
+    private final DoublePublisher captureLatency;
+    private final DoubleArrayPublisher botposeBlue;
+    private final DoubleArrayPublisher botposeRed;
+    private final double[] blue = new double[7];
+    private final double[] red = new double[7];
+
+    // Ground truth at each loop, so the published pose is from when the image was "taken"
+    private final double[] historyTime = new double[HISTORY_SIZE];
+    private final double[] historyX = new double[HISTORY_SIZE];
+    private final double[] historyY = new double[HISTORY_SIZE];
+    private final double[] historyTheta = new double[HISTORY_SIZE];
+    private int historyHead = 0;
+    private int historySize = 0;
+    private final double[] truth = new double[3];
+
+    public SimulatedLimelight(LimelightCamera camera, DrivetrainSubsystem drivetrain) {
+        this.drivetrain = drivetrain;
+        robotToCamera = camera.getRobotToCamera();
+        NetworkTable table = NetworkTableInstance.getDefault().getTable(camera.getName());
+        targetValid = table.getDoubleTopic("tv").publish();
+        targetID = table.getDoubleTopic("tid").publish();
+        targetXOffset = table.getDoubleTopic("tx").publish();
+        targetArea = table.getDoubleTopic("ta").publish();
+        pipelineLatency = table.getDoubleTopic("tl").publish();
+        captureLatency = table.getDoubleTopic("cl").publish();
+        botposeBlue = table.getDoubleArrayTopic("botpose_wpiblue").publish();
+        botposeRed = table.getDoubleArrayTopic("botpose_wpired").publish();
+    }
+
+    /* Called every simulation loop */
+    public void update() {
+        long now = WPIUtilJNI.now();
+        double nowSeconds = now / 1e6;
+        recordTruth(nowSeconds);
+
+        if (random.nextDouble() < Constants.SIM_LIMELIGHT_DROP_RATE) {
+            return;
+        }
+
+        double latencyMs = Constants.SIM_LIMELIGHT_PIPELINE_LATENCY_MS + Constants.SIM_LIMELIGHT_CAPTURE_LATENCY_MS;
+        int slot = historyAt(nowSeconds - latencyMs / 1000.0);
+        double x = historyX[slot];
+        double y = historyY[slot];
+        double theta = historyTheta[slot];
+        if (DriverStation.getAlliance() == Alliance.Red) {
+            // The drivetrain pose is relative to our alliance's origin, tags are in blue coordinates
+            x = FieldTags.getFieldLength() - x;
+            y = FieldTags.getFieldWidth() - y;
+            theta += Math.PI;
+        }
+
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        double cameraX = x + robotToCamera.getX() * cos - robotToCamera.getY() * sin;
+        double cameraY = y + robotToCamera.getX() * sin + robotToCamera.getY() * cos;
+        double cameraZ = robotToCamera.getZ();
+        double cameraYaw = theta + robotToCamera.getRotation().getZ();
+        double cameraPitch = robotToCamera.getRotation().getY();
+        double halfHorizontalFov = Math.toRadians(Constants.SIM_LIMELIGHT_HORIZONTAL_FOV_DEGREES) / 2.0;
+        double halfVerticalFov = Math.toRadians(Constants.SIM_LIMELIGHT_VERTICAL_FOV_DEGREES) / 2.0;
+
+        int visibleTags = 0;
+        int primaryID = 0;
+        double primaryArea = 0;
+        double primaryBearing = 0;
+        double distanceSum = 0;
+        for (int id = 0; id <= FieldTags.getMaxID(); id++) {
+            if (!FieldTags.has(id)) {
+                continue;
+            }
+            double dx = FieldTags.getX(id) - cameraX;
+            double dy = FieldTags.getY(id) - cameraY;
+            double dz = FieldTags.getZ(id) - cameraZ;
+            double horizontalDistance = Math.hypot(dx, dy);
+            double distance = Math.hypot(horizontalDistance, dz);
+            if (distance > Constants.SIM_LIMELIGHT_MAX_DISTANCE_METERS) {
+                continue;
+            }
+            double bearing = MathUtil.angleModulus(Math.atan2(dy, dx) - cameraYaw);
+            // WPILib pitch is positive nose down
+            double elevation = Math.atan2(dz, horizontalDistance) + cameraPitch;
+            if (Math.abs(bearing) > halfHorizontalFov || Math.abs(elevation) > halfVerticalFov) {
+                continue;
+            }
+            // Only the front of a tag can be seen
+            double tagYaw = FieldTags.getYaw(id);
+            double facing = -(dx * Math.cos(tagYaw) + dy * Math.sin(tagYaw)) / horizontalDistance;
+            if (facing <= 0) {
+                continue;
+            }
+
+            double angularSize = TAG_SIZE_METERS / distance;
+            double area = angularSize * angularSize * facing / (4 * halfHorizontalFov * halfVerticalFov) * 100;
+            visibleTags++;
+            distanceSum += distance;
+            if (area > primaryArea) {
+                primaryArea = area;
+                primaryID = id;
+                primaryBearing = bearing;
+            }
+        }
+
+        if (visibleTags == 0) {
+            publish(now, false, 0, 0, 0, latencyMs);
+            return;
+        }
+
+        double distanceRatio = distanceSum / visibleTags / 3.0;
+        double xyNoise = Constants.SIM_LIMELIGHT_XY_NOISE_METERS * distanceRatio * distanceRatio / Math.sqrt(visibleTags);
+        double noisyX = x + random.nextGaussian() * xyNoise;
+        double noisyY = y + random.nextGaussian() * xyNoise;
+        double noisyTheta = theta + Math.toRadians(random.nextGaussian() * Constants.SIM_LIMELIGHT_HEADING_NOISE_DEGREES);
+
+        blue[0] = noisyX;
+        blue[1] = noisyY;
+        blue[5] = Math.toDegrees(MathUtil.angleModulus(noisyTheta));
+        blue[6] = latencyMs;
+        red[0] = FieldTags.getFieldLength() - noisyX;
+        red[1] = FieldTags.getFieldWidth() - noisyY;
+        red[5] = Math.toDegrees(MathUtil.angleModulus(noisyTheta + Math.PI));
+        red[6] = latencyMs;
+        // tx is positive to the right
+        publish(now, true, primaryID, -Math.toDegrees(primaryBearing), primaryArea, latencyMs);
+    }
+
+    private void publish(long time, boolean hasTarget, int id, double xOffset, double area, double latencyMs) {
+        if (!hasTarget) {
+            for (int i = 0; i < blue.length; i++) {
+                blue[i] = 0;
+                red[i] = 0;
+            }
+            blue[6] = latencyMs;
+            red[6] = latencyMs;
+        }
+        // Everything shares one timestamp so Vision pairs it with the botpose
+        targetValid.set(hasTarget ? 1 : 0, time);
+        targetID.set(hasTarget ? id : -1, time);
+        targetXOffset.set(xOffset, time);
+        targetArea.set(area, time);
+        pipelineLatency.set(Constants.SIM_LIMELIGHT_PIPELINE_LATENCY_MS, time);
+        captureLatency.set(Constants.SIM_LIMELIGHT_CAPTURE_LATENCY_MS, time);
+        botposeBlue.set(blue, time);
+        botposeRed.set(red, time);
+    }
+
+    private void recordTruth(double time) {
+        drivetrain.getSimulatedPose(truth);
+        historyTime[historyHead] = time;
+        historyX[historyHead] = truth[0];
+        historyY[historyHead] = truth[1];
+        historyTheta[historyHead] = truth[2];
+        historyHead = (historyHead + 1) % HISTORY_SIZE;
+        if (historySize < HISTORY_SIZE) {
+            historySize++;
+        }
+    }
+
+    /* Slot of the newest recorded pose at or before time, or the oldest one we have */
+    private int historyAt(double time) {
+        int slot = (historyHead - 1 + HISTORY_SIZE) % HISTORY_SIZE;
+        for (int i = 1; i < historySize; i++) {
+            if (historyTime[slot] <= time) {
+                break;
+            }
+            slot = (slot - 1 + HISTORY_SIZE) % HISTORY_SIZE;
+        }
+        return slot;
+    }
+}
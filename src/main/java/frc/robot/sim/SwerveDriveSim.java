@@ -0,0 +1,210 @@
+package frc.robot.sim;
+
+import com.swervedrivespecialties.swervelib.ModuleConfiguration;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.simulation.BatterySim;
+import edu.wpi.first.wpilibj.simulation.RoboRioSim;
+import frc.robot.Constants;
+
+/**
+ * Physics model of the swerve drive for simulation. Each module has a NEO drive motor turning the
+ * wheel through the module's gearing and a NEO steer motor running the same position loop the
+ * SPARK MAX does. The wheels push the robot through a friction model, so they slip when asked for
+ * more than the carpet can give, and scrub sideways when they point the wrong way. Motor current
+ * sags the simulated battery, which limits the voltage the motors get next step.
+ *
+ * <p>Integrated with SIM_SUBSTEPS fixed steps per update so the tire model stays stable.
+ */
+public class SwerveDriveSim {
+    private static final double GRAVITY = 9.81;
+
+    private final DCMotor driveMotor = DCMotor.getNEO(1);
+    private final DCMotor steerMotor = DCMotor.getNEO(1);
+    private final double wheelRadius;
+    private final double driveGearing; // motor turns per wheel turn
+    private final double steerGearing;
+    private final double[] moduleX;
+    private final double[] moduleY;
+    private final int moduleCount;
+
+    // Inputs
+    private final double[] driveVoltages;
+    private final double[] steerTargets;
+
+    // Module state
+    private final double[] wheelVelocities; // rad/s
+    private final double[] wheelPositions; // rad
+    private final double[] steerAngles; // rad
+    private final double[] steerVelocities; // rad/s
+    private final double[] driveCurrents;
+    private final double[] steerCurrents;
+
+    // Robot state, field relative
+    private double x;
+    private double y;
+    private double heading;
+    private double vx;
+    private double vy;
+    private double omega;
+    private double batteryVoltage = 12;
+
+    public SwerveDriveSim(ModuleConfiguration configuration, double[] moduleX, double[] moduleY) {
+        wheelRadius = configuration.getWheelDiameter() / 2.0;
+        driveGearing = 1.0 / configuration.getDriveReduction();
+        steerGearing = 1.0 / configuration.getSteerReduction();
+        this.moduleX = moduleX.clone();
+        this.moduleY = moduleY.clone();
+        moduleCount = moduleX.length;
+        driveVoltages = new double[moduleCount];
+        steerTargets = new double[moduleCount];
+        wheelVelocities = new double[moduleCount];
+        wheelPositions = new double[moduleCount];
+        steerAngles = new double[moduleCount];
+        steerVelocities = new double[moduleCount];
+        driveCurrents = new double[moduleCount];
+        steerCurrents = new double[moduleCount];
+    }
+
+    /**
+     * Same as SwerveModule.set(), the module turns at most 90 degrees and reverses the drive
+     * voltage instead.
+     */
+    public void setModule(int module, double driveVoltage, double steerAngle) {
+        double delta = MathUtil.angleModulus(steerAngle - steerAngles[module]);
+        if (Math.abs(delta) > Math.PI / 2.0) {
+            driveVoltage = -driveVoltage;
+            steerAngle += Math.PI;
+        }
+        driveVoltages[module] = driveVoltage;
+        steerTargets[module] = MathUtil.angleModulus(steerAngle);
+    }
+
+    public void update(double dtSeconds) {
+        double dt = dtSeconds / Constants.SIM_SUBSTEPS;
+        for (int step = 0; step < Constants.SIM_SUBSTEPS; step++) {
+            step(dt);
+        }
+
+        double totalCurrent = 0;
+        for (int i = 0; i < moduleCount; i++) {
+            totalCurrent += Math.abs(driveCurrents[i]) + Math.abs(steerCurrents[i]);
+        }
+        batteryVoltage = BatterySim.calculateDefaultBatteryLoadedVoltage(totalCurrent);
+        RoboRioSim.setVInVoltage(batteryVoltage);
+    }
+
+    private void step(double dt) {
+        double maxFriction = Constants.SIM_WHEEL_COEFFICIENT_OF_FRICTION * Constants.SIM_ROBOT_MASS_KG * GRAVITY / moduleCount;
+        double cos = Math.cos(heading);
+        double sin = Math.sin(heading);
+        double forceX = 0;
+        double forceY = 0;
+        double torque = 0;
+
+        for (int i = 0; i < moduleCount; i++) {
+            // Module position and wheel direction in field coordinates
+            double offsetX = moduleX[i] * cos - moduleY[i] * sin;
+            double offsetY = moduleX[i] * sin + moduleY[i] * cos;
+            double wheelAngle = heading + steerAngles[i];
+            double wheelCos = Math.cos(wheelAngle);
+            double wheelSin = Math.sin(wheelAngle);
+
+            // How fast the carpet moves under the wheel, along and across it
+            double groundX = vx - omega * offsetY;
+            double groundY = vy + omega * offsetX;
+            double along = groundX * wheelCos + groundY * wheelSin;
+            double across = -groundX * wheelSin + groundY * wheelCos;
+
+            // Friction grows with slip until the wheel breaks loose
+            double slip = wheelVelocities[i] * wheelRadius - along;
+            double longitudinal = maxFriction * MathUtil.clamp(slip / Constants.SIM_SLIP_VELOCITY_METERS_PER_SECOND, -1, 1);
+            double lateral = maxFriction * MathUtil.clamp(-across / Constants.SIM_SLIP_VELOCITY_METERS_PER_SECOND, -1, 1);
+            double total = Math.hypot(longitudinal, lateral);
+            if (total > maxFriction) {
+                longitudinal *= maxFriction / total;
+                lateral *= maxFriction / total;
+            }
+
+            // Drive motor against the friction force on the wheel
+            double driveVoltage = MathUtil.clamp(driveVoltages[i], -batteryVoltage, batteryVoltage);
+            double driveCurrent = driveMotor.getCurrent(wheelVelocities[i] * driveGearing, driveVoltage);
+            driveCurrent = MathUtil.clamp(driveCurrent, -Constants.DRIVE_CURRENT_LIMIT, Constants.DRIVE_CURRENT_LIMIT);
+            driveCurrents[i] = driveCurrent;
+            double wheelTorque = driveMotor.getTorque(driveCurrent) * driveGearing - longitudinal * wheelRadius;
+            wheelVelocities[i] += wheelTorque / Constants.SIM_DRIVE_INERTIA_KG_METERS_SQUARED * dt;
+            wheelPositions[i] += wheelVelocities[i] * dt;
+
+            // Steer position loop, same as the SPARK MAX runs
+            double steerError = MathUtil.angleModulus(steerTargets[i] - steerAngles[i]);
+            double steerVoltage = MathUtil.clamp(Constants.SIM_STEER_P_VOLTS_PER_RADIAN * steerError, -batteryVoltage, batteryVoltage);
+            double steerCurrent = steerMotor.getCurrent(steerVelocities[i] * steerGearing, steerVoltage);
+            steerCurrents[i] = steerCurrent;
+            steerVelocities[i] += steerMotor.getTorque(steerCurrent) * steerGearing / Constants.SIM_STEER_INERTIA_KG_METERS_SQUARED * dt;
+            steerAngles[i] = MathUtil.angleModulus(steerAngles[i] + steerVelocities[i] * dt);
+
+            double moduleForceX = longitudinal * wheelCos - lateral * wheelSin;
+            double moduleForceY = longitudinal * wheelSin + lateral * wheelCos;
+            forceX += moduleForceX;
+            forceY += moduleForceY;
+            torque += offsetX * moduleForceY - offsetY * moduleForceX;
+        }
+
+        vx += forceX / Constants.SIM_ROBOT_MASS_KG * dt;
+        vy += forceY / Constants.SIM_ROBOT_MASS_KG * dt;
+        omega += torque / Constants.SIM_ROBOT_MOMENT_OF_INERTIA * dt;
+        x += vx * dt;
+        y += vy * dt;
+        heading = MathUtil.angleModulus(heading + omega * dt);
+    }
+
+    /* Teleports the robot, it stops moving */
+    public void resetPose(double x, double y, double heading) {
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        vx = 0;
+        vy = 0;
+        omega = 0;
+        for (int i = 0; i < moduleCount; i++) {
+            wheelVelocities[i] = 0;
+        }
+    }
+
+    /* Meters per second, what the drive encoder would read */
+    public double getDriveVelocity(int module) {
+        return wheelVelocities[module] * wheelRadius;
+    }
+
+    /* Meters */
+    public double getDrivePosition(int module) {
+        return wheelPositions[module] * wheelRadius;
+    }
+
+    /* Radians, robot relative */
+    public double getSteerAngle(int module) {
+        return MathUtil.inputModulus(steerAngles[module], 0, 2.0 * Math.PI);
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getHeading() {
+        return heading;
+    }
+
+    /* Radians per second, counterclockwise positive */
+    public double getAngularVelocity() {
+        return omega;
+    }
+
+    public double getBatteryVoltage() {
+        return batteryVoltage;
+    }
+}
@@ -7,34 +7,66 @@ package frc.robot.subsystems;
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.CANSparkMax.SoftLimitDirection;
 import com.revrobotics.CANSparkMaxLowLevel.MotorType;
+import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
 import com.revrobotics.SparkMaxAbsoluteEncoder;
 
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.ArmFeedforward;
 import edu.wpi.first.math.controller.ProfiledPIDController;
 import edu.wpi.first.math.trajectory.TrapezoidProfile.Constraints;
-import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
-import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
+import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
+import frc.robot.util.ArmCharacterizer;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.SettleDetector;
+import frc.robot.util.SensorSnapshot;
+import frc.robot.util.Telemetry;
 
 public class ArmSubsystem extends SubsystemBase {
-  private ShuffleboardTab armTab = Shuffleboard.getTab("ArmSubsystem");
+  private static final int CHARACTERIZATION_FRAME_PERIOD_MS = 5;
+  // Position every loop so arrival is seen when it happens, velocity isn't used outside characterization
+  private static final int POSITION_FRAME_PERIOD_MS = 20;
+  private static final int VELOCITY_FRAME_PERIOD_MS = 200;
+
   private CANSparkMax armMotor;
   private ProfiledPIDController pid;
   private SparkMaxAbsoluteEncoder absEncoder;
+  private final SensorSnapshot sensors;
+  private final int profilerId = LoopProfiler.register("ArmSubsystem");
+  private final Telemetry.DoubleSignal positionSignal = Telemetry.doubleSignal("/Shuffleboard/ArmSubsystem/Position");
   private double targetPosition = Constants.ARM_INSIDE_ROBOT_POSITION;
+  private final SettleDetector settle = new SettleDetector(Constants.ARM_SETTLED_POSITION_TOLERANCE,
+    Constants.ARM_SETTLED_VELOCITY_TOLERANCE, Constants.ARM_SETTLED_LOOPS, TimedRobot.kDefaultPeriod);
+  private final Telemetry.DoubleSignal arrivalSignal = Telemetry.doubleSignal("/Shuffleboard/ArmSubsystem/Arrival Seconds");
+
+  // Gravity and velocity feedforward on the profile setpoint, only when ARM_FEEDFORWARD_ENABLED
+  private final ArmFeedforward feedforward = new ArmFeedforward(
+    Constants.ARM_KS, Constants.ARM_KG, Constants.ARM_KV, Constants.ARM_KA);
+  private double lastSetpointVelocity = 0;
+  private ArmCharacterizer characterizer;
+  private volatile boolean characterizing = false;
 
-  public ArmSubsystem() {
+  public ArmSubsystem(SensorSnapshot sensors) {
+    this.sensors = sensors;
     armMotor = new CANSparkMax(Constants.ARM_MOTOR, MotorType.kBrushless);
     armMotor.setInverted(true);
 
-    pid = new ProfiledPIDController(Constants.ARM_P_COEFF, Constants.ARM_I_COEFF,Constants.ARM_D_COEFF, new Constraints(Constants.MAX_ARM_VELOCITY, Constants.MAX_ARM_ACCELERATION));
+    if (Constants.ARM_FEEDFORWARD_ENABLED) {
+      // Feedforward does most of the work, so the profile can go faster and the P term is in volts
+      pid = new ProfiledPIDController(Constants.ARM_FEEDFORWARD_P_COEFF, 0, 0,
+        new Constraints(Constants.ARM_FEEDFORWARD_MAX_VELOCITY, Constants.ARM_FEEDFORWARD_MAX_ACCELERATION));
+    } else {
+      pid = new ProfiledPIDController(Constants.ARM_P_COEFF, Constants.ARM_I_COEFF,Constants.ARM_D_COEFF, new Constraints(Constants.MAX_ARM_VELOCITY, Constants.MAX_ARM_ACCELERATION));
+    }
     pid.enableContinuousInput(0, 1);
 
     setTargetPosition(targetPosition);
 
     absEncoder = armMotor.getAbsoluteEncoder(SparkMaxAbsoluteEncoder.Type.kDutyCycle);
+    absEncoder.setVelocityConversionFactor(1.0 / 60.0); // RPM to rotations per second
+    armMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus5, POSITION_FRAME_PERIOD_MS);
 
-    armTab.addNumber("Position", () -> getPosition());
     setSoftLimit();
   }
   
@@ -50,23 +82,92 @@ public class ArmSubsystem extends SubsystemBase {
   }
 
 
+  /* Called by RobotContainer at the start of each loop, everything else reads the snapshot */
+  public void readSensors() {
+    sensors.setArmPosition(absEncoder.getPosition());
+  }
+
   public double getPosition() {
-    return absEncoder.getPosition();
+    return sensors.getArmPosition();
   }
 
   public void setTargetPosition(double position){
     targetPosition = position;
     pid.setGoal(targetPosition);
+    settle.setTarget(targetPosition, sensors.getTimestamp());
+  }
+
+  /* In position and stopped at the target, and the profile is finished */
+  public boolean isAtTarget() {
+    return settle.isSettled();
   }
 
   public double getTargetPosition() {
     return targetPosition;
   }
 
+  /* Radians from level, for ArmFeedforward */
+  private static double toAngleRadians(double position) {
+    return MathUtil.angleModulus((position - Constants.ARM_HORIZONTAL_POSITION) * 2 * Math.PI);
+  }
+
+  /**
+   * Hands the motor to an ArmCharacterizer until stopCharacterization(). It drives the arm from its
+   * own notifier and reads the encoder directly at a high rate, so the status frames for the
+   * absolute encoder are sped up while it runs.
+   */
+  public ArmCharacterizer startCharacterization() {
+    if (characterizer == null) {
+      characterizer = new ArmCharacterizer("Arm",
+        armMotor::setVoltage,
+        absEncoder::getPosition,
+        () -> toAngleRadians(absEncoder.getPosition()),
+        () -> absEncoder.getVelocity() * 2 * Math.PI,
+        Constants.ARM_CHARACTERIZATION_MIN_POSITION,
+        Constants.ARM_CHARACTERIZATION_MAX_POSITION,
+        Constants.ARM_CHARACTERIZATION_RAMP_VOLTS_PER_SECOND,
+        Constants.ARM_CHARACTERIZATION_STEP_VOLTS);
+    }
+    armMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus5, CHARACTERIZATION_FRAME_PERIOD_MS);
+    armMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus6, CHARACTERIZATION_FRAME_PERIOD_MS);
+    characterizing = true;
+    characterizer.start();
+    return characterizer;
+  }
+
+  public void stopCharacterization() {
+    if (characterizer != null) {
+      characterizer.stop();
+    }
+    armMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus5, POSITION_FRAME_PERIOD_MS);
+    armMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus6, VELOCITY_FRAME_PERIOD_MS);
+    characterizing = false;
+    // Hold wherever the tests left it
+    pid.reset(getPosition());
+    setTargetPosition(getPosition());
+  }
+
   @Override
   public void periodic() {
-    
-    armMotor.set(pid.calculate(getPosition()));
-  
+    LoopProfiler.begin(profilerId);
+    if (characterizing) {
+      // The characterizer owns the motor
+    } else if (Constants.ARM_FEEDFORWARD_ENABLED) {
+      double feedback = pid.calculate(getPosition());
+      double setpointVelocity = pid.getSetpoint().velocity;
+      double setpointAcceleration = (setpointVelocity - lastSetpointVelocity) / TimedRobot.kDefaultPeriod;
+      lastSetpointVelocity = setpointVelocity;
+      armMotor.setVoltage(feedback + feedforward.calculate(
+        toAngleRadians(pid.getSetpoint().position),
+        setpointVelocity * 2 * Math.PI,
+        setpointAcceleration * 2 * Math.PI));
+    } else {
+      armMotor.set(pid.calculate(getPosition()));
+    }
+    if (settle.update(getPosition(), sensors.getTimestamp(), pid.getSetpoint().equals(pid.getGoal()))) {
+      arrivalSignal.set(settle.getArrivalSeconds());
+    }
+    positionSignal.set(getPosition());
+    LoopProfiler.end(profilerId);
   }
 }
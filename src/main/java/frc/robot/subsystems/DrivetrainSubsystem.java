@@ -8,19 +8,21 @@ import com.swervedrivespecialties.swervelib.Mk4SwerveModuleHelper;
 import com.swervedrivespecialties.swervelib.SdsModuleConfigurations;
 import com.swervedrivespecialties.swervelib.SwerveModule;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.geometry.Transform2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
-import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
-import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.hal.SimDouble;
+import edu.wpi.first.hal.simulation.SimDeviceDataJNI;
+import edu.wpi.first.wpilibj.Notifier;
 import edu.wpi.first.wpilibj.SPI;
+import edu.wpi.first.wpilibj.Threads;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.shuffleboard.BuiltInLayouts;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
@@ -30,6 +32,14 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
 import frc.robot.Robot;
+import frc.robot.sim.SwerveDriveSim;
+import frc.robot.util.FastSwerveKinematics;
+import frc.robot.util.InputLatency;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.PoseHistoryEstimator;
+import frc.robot.util.PoseSnapshot;
+import frc.robot.util.SensorSnapshot;
+import frc.robot.util.Telemetry;
 
 public class DrivetrainSubsystem extends SubsystemBase {
         public static final double MAX_VOLTAGE = 12;
@@ -38,40 +48,81 @@ public class DrivetrainSubsystem extends SubsystemBase {
                         SdsModuleConfigurations.MK4_L3.getWheelDiameter() * Math.PI;
         public static final double MAX_ANGULAR_VELOCITY_RADIANS_PER_SECOND = MAX_VELOCITY_METERS_PER_SECOND /
                         Math.hypot(DRIVETRAIN_TRACKWIDTH_METERS / 2.0, DRIVETRAIN_WHEELBASE_METERS / 2.0);
-
+        // The field widget is only redrawn every this many loops, 5 times a second
+        private static final int FIELD_UPDATE_LOOPS = 10;
+
+        // Front left, front right, back left, back right
+        private static final double[] MODULE_X = {
+                        DRIVETRAIN_TRACKWIDTH_METERS / 2.0, DRIVETRAIN_TRACKWIDTH_METERS / 2.0,
+                        -DRIVETRAIN_TRACKWIDTH_METERS / 2.0, -DRIVETRAIN_TRACKWIDTH_METERS / 2.0 };
+        private static final double[] MODULE_Y = {
+                        DRIVETRAIN_WHEELBASE_METERS / 2.0, -DRIVETRAIN_WHEELBASE_METERS / 2.0,
+                        DRIVETRAIN_WHEELBASE_METERS / 2.0, -DRIVETRAIN_WHEELBASE_METERS / 2.0 };
+
+        // Only handed to PathPlanner, the control loop uses fastKinematics
         private final SwerveDriveKinematics kinematics = new SwerveDriveKinematics(
-                        // Front left
-                        new Translation2d(DRIVETRAIN_TRACKWIDTH_METERS / 2.0, DRIVETRAIN_WHEELBASE_METERS / 2.0),
-                        // Front right
-                        new Translation2d(DRIVETRAIN_TRACKWIDTH_METERS / 2.0, -DRIVETRAIN_WHEELBASE_METERS / 2.0),
-                        // Back left
-                        new Translation2d(-DRIVETRAIN_TRACKWIDTH_METERS / 2.0, DRIVETRAIN_WHEELBASE_METERS / 2.0),
-                        // Back right
-                        new Translation2d(-DRIVETRAIN_TRACKWIDTH_METERS / 2.0, -DRIVETRAIN_WHEELBASE_METERS / 2.0));
+                        new Translation2d(MODULE_X[0], MODULE_Y[0]),
+                        new Translation2d(MODULE_X[1], MODULE_Y[1]),
+                        new Translation2d(MODULE_X[2], MODULE_Y[2]),
+                        new Translation2d(MODULE_X[3], MODULE_Y[3]));
+        private final FastSwerveKinematics fastKinematics = new FastSwerveKinematics(MODULE_X, MODULE_Y);
 
         private final AHRS navx = new AHRS(SPI.Port.kMXP, (byte) 200);
+        private final SensorSnapshot sensors;
+        // Reads the module hardware on its own notifier, the simulation only updates once a loop
+        private final boolean highRateOdometry = HIGH_RATE_ODOMETRY_ENABLED && Robot.isReal();
+        private final int profilerId = LoopProfiler.register("DrivetrainSubsystem");
+        private final Telemetry.DoubleSignal gyroRollSignal = Telemetry.doubleSignal("/SmartDashboard/Gyro Roll");
+        private final Telemetry.DoubleSignal gyroPitchSignal = Telemetry.doubleSignal("/SmartDashboard/Gyro Pitch");
+        private final Telemetry.BooleanSignal balanceTargetSignal = Telemetry.booleanSignal("/SmartDashboard/Balance Target");
 
         private final SwerveModule frontLeftModule;
         private final SwerveModule frontRightModule;
         private final SwerveModule backLeftModule;
         private final SwerveModule backRightModule;
-
-        private double[] positionMeters = new double[4];
+        // Same modules as above when CLOSED_LOOP_DRIVE_ENABLED or HIGH_RATE_ODOMETRY_ENABLED, otherwise null
+        private final NeoSwerveModule[] neoModules;
+
+        // Everything the loop touches each cycle is allocated once here
+        private final double[] positionMeters = new double[4];
+        private final double[] moduleSpeeds = new double[4];
+        private final double[] moduleAngles = new double[4];
+        private final double[] chassisScratch = new double[3];
+        private final double[] poseScratch = new double[4];
+        private final double[] measuredVelocities = new double[4];
+        private final double[] measuredSteerAngles = new double[4];
         private double lastUpdateTime = 0;
 
-        private SwerveModuleState[] states;
-        private SwerveDriveOdometry odometry;
+        // Odometry state, owned by whichever thread runs updateOdometry()
+        private final Object odometryLock = new Object();
+        private final double[] measuredAngles = new double[4];
+        private final Notifier odometryNotifier = new Notifier(this::updateOdometry);
+        private boolean odometryThreadPrioritySet = false;
+
+        private PoseHistoryEstimator odometry;
+        private final PoseSnapshot poseSnapshot = new PoseSnapshot();
         private Pose2d robotPose = new Pose2d();
+        private int robotPoseSequence = 0;
         private Field2d field = new Field2d();
-        private double simRotation = 0;
+        // Physics model and simulated navX yaw, only in simulation
+        private SwerveDriveSim sim;
+        private SimDouble navxSimYaw;
+        // Added to the model's heading, what navx.reset() and setAngleAdjustment() do on the real one
+        private double simGyroOffset = 0;
+        private final double[] simDriveVoltages = new double[4];
         private final Pose2d RED_ORIGIN = new Pose2d(new Translation2d(Constants.RED_ORIGIN_POS_X_METERS, Constants.RED_ORIGIN_POS_Y_METERS),Rotation2d.fromDegrees(Constants.RED_ORIGIN_ROTATION_DEG));
+        private final double redOriginCos = RED_ORIGIN.getRotation().getCos();
+        private final double redOriginSin = RED_ORIGIN.getRotation().getSin();
+        private final double redOriginRadians = RED_ORIGIN.getRotation().getRadians();
+        private int loopsSinceFieldUpdate = 0;
 
-        private ChassisSpeeds chassisSpeeds = new ChassisSpeeds(0.0, 0.0, 0.0);
+        private final ChassisSpeeds chassisSpeeds = new ChassisSpeeds(0.0, 0.0, 0.0);
 
         private Rotation2d rotationTarget;
         private Translation2d translationTarget;
         private Rotation2d balanceTarget;
-        private Pose2d balanceTargetOriginalPose;
+        private double balanceOriginalX;
+        private double balanceOriginalY;
 
         private PIDController yPID = new PIDController(TRANSLATION_PROPORTIONAL_COEFFICENT, TRANSLATION_INTEGRAL_COEFFICENT,
         TRANSLATION_DERIVATIVE_COEFFICENT);
@@ -80,164 +131,376 @@ public class DrivetrainSubsystem extends SubsystemBase {
         private PIDController rotationPID = new PIDController(ROTATION_PROPORTIONAL_COEFFICENT, ROTATION_INTEGRAL_COEFFICENT,
         ROTATION_DERIVATIVE_COEFFICENT);
 
-        public DrivetrainSubsystem() {
-                states = kinematics.toSwerveModuleStates(chassisSpeeds);
+        public DrivetrainSubsystem(SensorSnapshot sensors) {
+                this.sensors = sensors;
+                if (Robot.isSimulation()) {
+                        sim = new SwerveDriveSim(SdsModuleConfigurations.MK4_L3, MODULE_X, MODULE_Y);
+                        int navxHandle = SimDeviceDataJNI.getSimDeviceHandle("navX-Sensor[0]");
+                        if (navxHandle != 0) {
+                                navxSimYaw = new SimDouble(SimDeviceDataJNI.getSimValueHandle(navxHandle, "Yaw"));
+                        }
+                }
                 SmartDashboard.putData("Field Sim", field);
 
                 ShuffleboardTab tab = Shuffleboard.getTab("Drivetrain");
                 Mk4ModuleConfiguration config = new Mk4ModuleConfiguration();
-                config.setDriveCurrentLimit(40);
-
-                frontLeftModule = Mk4SwerveModuleHelper.createNeo(
-                                tab.getLayout("Front Left Module", BuiltInLayouts.kList)
-                                                .withSize(2, 4)
-                                                .withPosition(0, 0),
-                                config,
-                                Mk4SwerveModuleHelper.GearRatio.L3,
-                                FRONT_LEFT_MODULE_DRIVE_MOTOR,
-                                FRONT_LEFT_MODULE_STEER_MOTOR,
-                                FRONT_LEFT_MODULE_STEER_ENCODER,
-                                FRONT_LEFT_MODULE_STEER_OFFSET);
-
-                frontRightModule = Mk4SwerveModuleHelper.createNeo(
-                                tab.getLayout("Front Right Module", BuiltInLayouts.kList)
-                                                .withSize(2, 4)
-                                                .withPosition(2, 0),
-                                config,
-                                Mk4SwerveModuleHelper.GearRatio.L3,
-                                FRONT_RIGHT_MODULE_DRIVE_MOTOR,
-                                FRONT_RIGHT_MODULE_STEER_MOTOR,
-                                FRONT_RIGHT_MODULE_STEER_ENCODER,
-                                FRONT_RIGHT_MODULE_STEER_OFFSET);
-
-                backLeftModule = Mk4SwerveModuleHelper.createNeo(
-                                tab.getLayout("Back Left Module", BuiltInLayouts.kList)
-                                                .withSize(2, 4)
-                                                .withPosition(4, 0),
-                                config,
-                                Mk4SwerveModuleHelper.GearRatio.L3,
-                                BACK_LEFT_MODULE_DRIVE_MOTOR,
-                                BACK_LEFT_MODULE_STEER_MOTOR,
-                                BACK_LEFT_MODULE_STEER_ENCODER,
-                                BACK_LEFT_MODULE_STEER_OFFSET);
-
-                backRightModule = Mk4SwerveModuleHelper.createNeo(
-                                tab.getLayout("Back Right Module", BuiltInLayouts.kList)
-                                                .withSize(2, 4)
-                                                .withPosition(6, 0),
-                                config,
-                                Mk4SwerveModuleHelper.GearRatio.L3,
-                                BACK_RIGHT_MODULE_DRIVE_MOTOR,
-                                BACK_RIGHT_MODULE_STEER_MOTOR,
-                                BACK_RIGHT_MODULE_STEER_ENCODER,
-                                BACK_RIGHT_MODULE_STEER_OFFSET);
-                
-                odometry = new SwerveDriveOdometry(
-                        kinematics,
-                        getGyroscopeRotation(),
-                        getModulePositions()
+                config.setDriveCurrentLimit(DRIVE_CURRENT_LIMIT);
+
+                // High rate odometry needs the SPARK MAX frame periods, which the SDS modules don't expose
+                if (CLOSED_LOOP_DRIVE_ENABLED || HIGH_RATE_ODOMETRY_ENABLED) {
+                        neoModules = new NeoSwerveModule[] {
+                                new NeoSwerveModule(SdsModuleConfigurations.MK4_L3, FRONT_LEFT_MODULE_DRIVE_MOTOR,
+                                                FRONT_LEFT_MODULE_STEER_MOTOR, FRONT_LEFT_MODULE_STEER_ENCODER, FRONT_LEFT_MODULE_STEER_OFFSET),
+                                new NeoSwerveModule(SdsModuleConfigurations.MK4_L3, FRONT_RIGHT_MODULE_DRIVE_MOTOR,
+                                                FRONT_RIGHT_MODULE_STEER_MOTOR, FRONT_RIGHT_MODULE_STEER_ENCODER, FRONT_RIGHT_MODULE_STEER_OFFSET),
+                                new NeoSwerveModule(SdsModuleConfigurations.MK4_L3, BACK_LEFT_MODULE_DRIVE_MOTOR,
+                                                BACK_LEFT_MODULE_STEER_MOTOR, BACK_LEFT_MODULE_STEER_ENCODER, BACK_LEFT_MODULE_STEER_OFFSET),
+                                new NeoSwerveModule(SdsModuleConfigurations.MK4_L3, BACK_RIGHT_MODULE_DRIVE_MOTOR,
+                                                BACK_RIGHT_MODULE_STEER_MOTOR, BACK_RIGHT_MODULE_STEER_ENCODER, BACK_RIGHT_MODULE_STEER_OFFSET)
+                        };
+                        frontLeftModule = neoModules[0];
+                        frontRightModule = neoModules[1];
+                        backLeftModule = neoModules[2];
+                        backRightModule = neoModules[3];
+                } else {
+                        neoModules = null;
+                        frontLeftModule = Mk4SwerveModuleHelper.createNeo(
+                                        tab.getLayout("Front Left Module", BuiltInLayouts.kList)
+                                                        .withSize(2, 4)
+                                                        .withPosition(0, 0),
+                                        config,
+                                        Mk4SwerveModuleHelper.GearRatio.L3,
+                                        FRONT_LEFT_MODULE_DRIVE_MOTOR,
+                                        FRONT_LEFT_MODULE_STEER_MOTOR,
+                                        FRONT_LEFT_MODULE_STEER_ENCODER,
+                                        FRONT_LEFT_MODULE_STEER_OFFSET);
+
+                        frontRightModule = Mk4SwerveModuleHelper.createNeo(
+                                        tab.getLayout("Front Right Module", BuiltInLayouts.kList)
+                                                        .withSize(2, 4)
+                                                        .withPosition(2, 0),
+                                        config,
+                                        Mk4SwerveModuleHelper.GearRatio.L3,
+                                        FRONT_RIGHT_MODULE_DRIVE_MOTOR,
+                                        FRONT_RIGHT_MODULE_STEER_MOTOR,
+                                        FRONT_RIGHT_MODULE_STEER_ENCODER,
+                                        FRONT_RIGHT_MODULE_STEER_OFFSET);
+
+                        backLeftModule = Mk4SwerveModuleHelper.createNeo(
+                                        tab.getLayout("Back Left Module", BuiltInLayouts.kList)
+                                                        .withSize(2, 4)
+                                                        .withPosition(4, 0),
+                                        config,
+                                        Mk4SwerveModuleHelper.GearRatio.L3,
+                                        BACK_LEFT_MODULE_DRIVE_MOTOR,
+                                        BACK_LEFT_MODULE_STEER_MOTOR,
+                                        BACK_LEFT_MODULE_STEER_ENCODER,
+                                        BACK_LEFT_MODULE_STEER_OFFSET);
+
+                        backRightModule = Mk4SwerveModuleHelper.createNeo(
+                                        tab.getLayout("Back Right Module", BuiltInLayouts.kList)
+                                                        .withSize(2, 4)
+                                                        .withPosition(6, 0),
+                                        config,
+                                        Mk4SwerveModuleHelper.GearRatio.L3,
+                                        BACK_RIGHT_MODULE_DRIVE_MOTOR,
+                                        BACK_RIGHT_MODULE_STEER_MOTOR,
+                                        BACK_RIGHT_MODULE_STEER_ENCODER,
+                                        BACK_RIGHT_MODULE_STEER_OFFSET);
+                }
+
+                if (highRateOdometry) {
+                        // A new encoder sample for every notifier run, and start from where the encoders are
+                        int framePeriodMs = (int) (HIGH_RATE_ODOMETRY_PERIOD_SECONDS * 1000);
+                        for (int i = 0; i < 4; i++) {
+                                neoModules[i].setOdometryFramePeriod(framePeriodMs);
+                                positionMeters[i] = neoModules[i].getDrivePosition();
+                        }
+                }
+
+                odometry = new PoseHistoryEstimator(
+                        fastKinematics,
+                        readGyroscopeRadians(),
+                        positionMeters,
+                        POSE_HISTORY_SIZE,
+                        ODOMETRY_STD_DEVS,
+                        VISION_STD_DEVS
                 );
+
+                odometryNotifier.setName("Odometry");
+                if (highRateOdometry) {
+                        odometryNotifier.startPeriodic(HIGH_RATE_ODOMETRY_PERIOD_SECONDS);
+                }
         }
 
         public void zeroRotation() {
                 resetPose(new Pose2d(getPose().getTranslation(), Rotation2d.fromDegrees(0)));
         }
 
-
-        private SwerveModulePosition[] getModulePositions() {
-                return new SwerveModulePosition[] {
-                        new SwerveModulePosition(positionMeters[0], states[0].angle),
-                        new SwerveModulePosition(positionMeters[1], states[1].angle),
-                        new SwerveModulePosition(positionMeters[2], states[2].angle),
-                        new SwerveModulePosition(positionMeters[3], states[3].angle)
-                };
-        }
-
         public void resetPose(Pose2d pose) {
+                // Vendor calls stay outside the lock so they can't hold up the odometry thread
                 navx.reset();
                 navx.setAngleAdjustment(pose.getRotation().getDegrees());
-                if(Robot.isSimulation()) {
-                        simRotation = pose.getRotation().getRadians();
+                if(sim != null) {
+                        // Only the estimate moves, the simulated robot stays where it is
+                        simGyroOffset = pose.getRotation().getRadians() - sim.getHeading();
+                        updateSimulatedGyro();
+                }
+                double gyro = readGyroscopeRadians();
+
+                synchronized (odometryLock) {
+                        // The snapshot is stale after a reset, refresh it so the rest of this loop drives correctly
+                        sensors.setGyroYawRadians(gyro);
+                        odometry.resetPosition(
+                                gyro,
+                                positionMeters,
+                                pose.getX(),
+                                pose.getY(),
+                                pose.getRotation().getRadians()
+                        );
+                        poseSnapshot.publish(odometry.getX(), odometry.getY(), odometry.getTheta(), Timer.getFPGATimestamp());
                 }
+        }
 
-                odometry.resetPosition(
-                        getGyroscopeRotation(),
-                        getModulePositions(), 
-                        pose
-                );
+        /*
+         * Where autos reset the pose to their start. In simulation the robot is also put there, as
+         * it would have been placed on the field. Every other reset only moves the estimate.
+         */
+        public void resetAutoStartPose(Pose2d pose) {
+                if (sim != null) {
+                        sim.resetPose(pose.getX(), pose.getY(), pose.getRotation().getRadians());
+                }
+                resetPose(pose);
         }
 
-        private void updatePose() {
-                if(Robot.isSimulation()) {
-                        positionMeters[0] += states[0].speedMetersPerSecond * (Timer.getFPGATimestamp() - lastUpdateTime);
-                        positionMeters[1] += states[1].speedMetersPerSecond * (Timer.getFPGATimestamp() - lastUpdateTime);
-                        positionMeters[2] += states[2].speedMetersPerSecond * (Timer.getFPGATimestamp() - lastUpdateTime);
-                        positionMeters[3] += states[3].speedMetersPerSecond * (Timer.getFPGATimestamp() - lastUpdateTime);
-                        simRotation += kinematics.toChassisSpeeds(states).omegaRadiansPerSecond * (Timer.getFPGATimestamp() - lastUpdateTime);
-                }else {
-                        positionMeters[0] += frontLeftModule.getDriveVelocity() * (Timer.getFPGATimestamp() - lastUpdateTime); // (m / s) * delta t = m
-                        positionMeters[1] += frontRightModule.getDriveVelocity() * (Timer.getFPGATimestamp() - lastUpdateTime);
-                        positionMeters[2] += backLeftModule.getDriveVelocity() * (Timer.getFPGATimestamp() - lastUpdateTime);
-                        positionMeters[3] += backRightModule.getDriveVelocity() * (Timer.getFPGATimestamp() - lastUpdateTime);
+        /*
+         * Integrates the module encoders and gyro into the pose. Runs on the odometry notifier
+         * reading the drive encoder positions directly when HIGH_RATE_ODOMETRY_ENABLED, otherwise
+         * once per periodic() from the loop's sensor snapshot.
+         */
+        private void updateOdometry() {
+                if (!odometryThreadPrioritySet && highRateOdometry) {
+                        Threads.setCurrentThreadPriority(true, HIGH_RATE_ODOMETRY_THREAD_PRIORITY);
+                        odometryThreadPrioritySet = true;
                 }
-                lastUpdateTime = Timer.getFPGATimestamp();
 
-                robotPose = odometry.update(
-                        getGyroscopeRotation(),
-                        getModulePositions()
-                );
+                synchronized (odometryLock) {
+                        double now = highRateOdometry ? Timer.getFPGATimestamp() : sensors.getTimestamp();
+                        double[] angles = moduleAngles;
+                        double gyro;
+                        if (highRateOdometry) {
+                                // Between scheduler runs the commanded angles are stale, use the real ones
+                                for (int i = 0; i < 4; i++) {
+                                        positionMeters[i] = neoModules[i].getDrivePosition();
+                                        measuredAngles[i] = neoModules[i].getSteerAngle();
+                                }
+                                angles = measuredAngles;
+                                gyro = readGyroscopeRadians();
+                        }else {
+                                double dt = now - lastUpdateTime;
+                                for (int i = 0; i < 4; i++) {
+                                        positionMeters[i] += sensors.getDriveVelocity(i) * dt; // (m / s) * delta t = m
+                                }
+                                if (CLOSED_LOOP_DRIVE_ENABLED || sim != null) {
+                                        // Modules may flip direction instead of turning, and simulated ones lag, so the commanded angle isn't enough
+                                        for (int i = 0; i < 4; i++) {
+                                                measuredAngles[i] = sensors.getSteerAngle(i);
+                                        }
+                                        angles = measuredAngles;
+                                }
+                                gyro = sensors.getGyroYawRadians();
+                        }
+                        lastUpdateTime = now;
 
-                if(DriverStation.getAlliance() == Alliance.Red && robotPose != null){
-                        field.setRobotPose(RED_ORIGIN.transformBy(new Transform2d(robotPose.getTranslation(), robotPose.getRotation())));
-                } else {
-                        field.setRobotPose(getPose());
+                        odometry.update(now, gyro, positionMeters, angles);
+                        poseSnapshot.publish(odometry.getX(), odometry.getY(), odometry.getTheta(), now);
+                }
+        }
+
+        /**
+         * Fuses a vision pose captured at timestampSeconds (FPGA time) into the odometry.
+         *
+         * @return false if the measurement was too old to use
+         */
+        public boolean addVisionMeasurement(Pose2d visionPose, double timestampSeconds) {
+                return addVisionMeasurement(visionPose.getX(), visionPose.getY(), visionPose.getRotation().getRadians(), timestampSeconds);
+        }
+
+        public boolean addVisionMeasurement(double x, double y, double rotationRadians, double timestampSeconds) {
+                synchronized (odometryLock) {
+                        boolean applied = odometry.addVisionMeasurement(x, y, rotationRadians, timestampSeconds);
+                        if (applied) {
+                                poseSnapshot.publish(odometry.getX(), odometry.getY(), odometry.getTheta(), Timer.getFPGATimestamp());
+                        }
+                        return applied;
+                }
+        }
+
+        /* Same, trusting the measurement by its own standard deviations (meters, radians) */
+        public boolean addVisionMeasurement(double x, double y, double rotationRadians, double timestampSeconds,
+                        double xyStdDev, double thetaStdDev) {
+                synchronized (odometryLock) {
+                        boolean applied = odometry.addVisionMeasurement(x, y, rotationRadians, timestampSeconds, xyStdDev, thetaStdDev);
+                        if (applied) {
+                                poseSnapshot.publish(odometry.getX(), odometry.getY(), odometry.getTheta(), Timer.getFPGATimestamp());
+                        }
+                        return applied;
+                }
+        }
+
+        /* Throttled, every update builds a Rotation2d here and a Pose2d inside Field2d */
+        private void updateField() {
+                if (++loopsSinceFieldUpdate < FIELD_UPDATE_LOOPS) {
+                        return;
+                }
+                loopsSinceFieldUpdate = 0;
+
+                poseSnapshot.read(poseScratch);
+                double x = poseScratch[0];
+                double y = poseScratch[1];
+                double theta = poseScratch[2];
+                if(DriverStation.getAlliance() == Alliance.Red){
+                        // RED_ORIGIN.transformBy(pose), done without building a Transform2d
+                        double redX = RED_ORIGIN.getX() + x * redOriginCos - y * redOriginSin;
+                        double redY = RED_ORIGIN.getY() + x * redOriginSin + y * redOriginCos;
+                        x = redX;
+                        y = redY;
+                        theta += redOriginRadians;
                 }
+                field.setRobotPose(x, y, new Rotation2d(theta));
         }
 
         public SwerveDriveKinematics getKinematics() {
                 return kinematics;
         }
 
+        /*
+         * Never blocks on the odometry thread. The Pose2d is only rebuilt when someone asks for
+         * it after a new pose has been published. Main thread only.
+         */
         public Pose2d getPose() {
+                int sequence = poseSnapshot.read(poseScratch);
+                if (sequence != robotPoseSequence) {
+                        robotPose = new Pose2d(poseScratch[0], poseScratch[1], new Rotation2d(poseScratch[2]));
+                        robotPoseSequence = sequence;
+                }
                 return robotPose;
         }
 
         public Rotation2d getRotation() {
-                return robotPose.getRotation();
+                return getPose().getRotation();
+        }
+
+        /* Ground truth pose of the simulated robot as {x, y, theta radians} written into out */
+        public void getSimulatedPose(double[] out) {
+                out[0] = sim.getX();
+                out[1] = sim.getY();
+                out[2] = sim.getHeading();
+        }
+
+        /* Latest pose as {x, y, theta radians, FPGA timestamp} written into out, without building a Pose2d */
+        public void getPose(double[] out) {
+                poseSnapshot.read(out);
         }
 
         public void setSwerveStates(SwerveModuleState[] states) {
-                this.chassisSpeeds = kinematics.toChassisSpeeds(states);
+                for (int i = 0; i < 4; i++) {
+                        moduleSpeeds[i] = states[i].speedMetersPerSecond;
+                        moduleAngles[i] = states[i].angle.getRadians();
+                }
+                fastKinematics.toChassisSpeeds(moduleSpeeds, moduleAngles, chassisScratch);
+                setChassisSpeeds(chassisScratch[0], chassisScratch[1], chassisScratch[2]);
         }
 
-        private Rotation2d getGyroscopeRotation() {
+        /* Takes this loop's drivetrain readings, called by RobotContainer before the scheduler runs. */
+        public void readSensors() {
+                if (sim != null) {
+                        sensors.setGyro(readGyroscopeRadians(), 0, 0, -Math.toDegrees(sim.getAngularVelocity()), 0, 0);
+                        for (int i = 0; i < 4; i++) {
+                                sensors.setModule(i, sim.getDriveVelocity(i), sim.getSteerAngle(i));
+                        }
+                        reportModuleSpeed();
+                        return;
+                }
+                sensors.setGyro(
+                        readGyroscopeRadians(),
+                        navx.getPitch(),
+                        navx.getRoll(),
+                        navx.getRate(),
+                        navx.getRawGyroX(),
+                        navx.getRawGyroY());
+                sensors.setModule(0, frontLeftModule.getDriveVelocity(), frontLeftModule.getSteerAngle());
+                sensors.setModule(1, frontRightModule.getDriveVelocity(), frontRightModule.getSteerAngle());
+                sensors.setModule(2, backLeftModule.getDriveVelocity(), backLeftModule.getSteerAngle());
+                sensors.setModule(3, backRightModule.getDriveVelocity(), backRightModule.getSteerAngle());
+                reportModuleSpeed();
+        }
 
-                if(Robot.isSimulation()) {
-                        return Rotation2d.fromRadians(simRotation);
+        private void reportModuleSpeed() {
+                double speed = 0;
+                for (int i = 0; i < 4; i++) {
+                        speed += Math.abs(sensors.getDriveVelocity(i));
+                }
+                InputLatency.moduleSpeedMeasured(speed / 4.0);
+        }
+
+        /* Robot relative {vx, vy, omega} from this loop's measured module speeds, written into out */
+        public void getMeasuredSpeeds(double[] out) {
+                for (int i = 0; i < 4; i++) {
+                        measuredVelocities[i] = sensors.getDriveVelocity(i);
+                        measuredSteerAngles[i] = sensors.getSteerAngle(i);
+                }
+                fastKinematics.toChassisSpeeds(measuredVelocities, measuredSteerAngles, out);
+        }
+
+        private double readGyroscopeRadians() {
+
+                if(sim != null) {
+                        // navx.reset() offsets are applied inside the vendor library, offset the model instead
+                        return MathUtil.angleModulus(sim.getHeading() + simGyroOffset);
                 }
 
                 if (navx.isMagnetometerCalibrated()) {
-                        return Rotation2d.fromDegrees(navx.getFusedHeading());
+                        return Math.toRadians(navx.getFusedHeading());
                 }
 
-                return Rotation2d.fromDegrees(360.0 - navx.getYaw());
+                return Math.toRadians(360.0 - navx.getYaw());
         }
 
         public Rotation2d getGyroscopePitch() {
-                return Rotation2d.fromDegrees(navx.getPitch());
+                return Rotation2d.fromDegrees(sensors.getGyroPitchDegrees());
         }
 
         public Rotation2d getGyroscopeRoll() {
-                return Rotation2d.fromDegrees(navx.getRoll());
+                return Rotation2d.fromDegrees(sensors.getGyroRollDegrees());
+        }
+
+        public double getGyroscopePitchDegrees() {
+                return sensors.getGyroPitchDegrees();
+        }
+
+        public double getGyroscopeRollDegrees() {
+                return sensors.getGyroRollDegrees();
         }
 
         public void drive(ChassisSpeeds chassisSpeeds) {
-                this.chassisSpeeds = chassisSpeeds;
+                setChassisSpeeds(chassisSpeeds.vxMetersPerSecond, chassisSpeeds.vyMetersPerSecond, chassisSpeeds.omegaRadiansPerSecond);
         }
 
         /* Convience method, calls drive. Uses field relative controls. */
         public void drive(double x, double y, double rotation) {
-                drive(ChassisSpeeds.fromFieldRelativeSpeeds(x, y, rotation, getGyroscopeRotation()));
+                // Same as ChassisSpeeds.fromFieldRelativeSpeeds
+                double gyro = sensors.getGyroYawRadians();
+                double cos = Math.cos(gyro);
+                double sin = Math.sin(gyro);
+                setChassisSpeeds(x * cos + y * sin, -x * sin + y * cos, rotation);
+        }
+
+        private void setChassisSpeeds(double vx, double vy, double omega) {
+                InputLatency.stamp(InputLatency.DRIVE);
+                chassisSpeeds.vxMetersPerSecond = vx;
+                chassisSpeeds.vyMetersPerSecond = vy;
+                chassisSpeeds.omegaRadiansPerSecond = omega;
         }
 
         public void setRotationTarget(Rotation2d rotationTarget) {
@@ -260,7 +523,8 @@ public class DrivetrainSubsystem extends SubsystemBase {
 
         public void setBalanceTarget(Rotation2d balanceTarget) {
                 this.balanceTarget = balanceTarget;
-                balanceTargetOriginalPose = getPose();
+                balanceOriginalX = getPose().getX();
+                balanceOriginalY = getPose().getY();
                 drive(0, 0, 0);
         }
 
@@ -274,21 +538,30 @@ public class DrivetrainSubsystem extends SubsystemBase {
 
         @Override
         public void periodic() {
+                LoopProfiler.begin(profilerId);
+                double pitch = sensors.getGyroPitchDegrees();
+                double roll = sensors.getGyroRollDegrees();
+                poseSnapshot.read(poseScratch);
+                double poseX = poseScratch[0];
+                double poseY = poseScratch[1];
+                double poseTheta = poseScratch[2];
+
                 if(rotationTarget != null && chassisSpeeds.omegaRadiansPerSecond == 0) {
-                        chassisSpeeds.omegaRadiansPerSecond = rotationPID.calculate(getRotation().minus(rotationTarget).getRadians());
+                        chassisSpeeds.omegaRadiansPerSecond = rotationPID.calculate(MathUtil.angleModulus(poseTheta - rotationTarget.getRadians()));
                 }
 
                 if(translationTarget != null && chassisSpeeds.vxMetersPerSecond == 0 && chassisSpeeds.vyMetersPerSecond == 0) {
-                        chassisSpeeds.vxMetersPerSecond = xPID.calculate(getPose().getTranslation().minus(translationTarget).getX());
-                        chassisSpeeds.vyMetersPerSecond = yPID.calculate(getPose().getTranslation().minus(translationTarget).getY());
+                        chassisSpeeds.vxMetersPerSecond = xPID.calculate(poseX - translationTarget.getX());
+                        chassisSpeeds.vyMetersPerSecond = yPID.calculate(poseY - translationTarget.getY());
                 }
 
                 if(balanceTarget != null ) {
+                        double balanceDegrees = balanceTarget.getDegrees();
 
-                        if (Math.abs(getGyroscopePitch().getDegrees()) >= AUTO_BALANCE_TOLERANCE_DEGREES && Math.abs(getGyroscopePitch().getDegrees()) > Math.abs(getGyroscopeRoll().getDegrees())) {
-                                chassisSpeeds.vyMetersPerSecond = yPID.calculate(-getGyroscopePitch().minus(balanceTarget).getDegrees());
-                        } else if (Math.abs(getGyroscopeRoll().getDegrees()) >= AUTO_BALANCE_TOLERANCE_DEGREES && Math.abs(getGyroscopeRoll().getDegrees()) > Math.abs(getGyroscopePitch().getDegrees())) {
-                                chassisSpeeds.vxMetersPerSecond = xPID.calculate(-getGyroscopeRoll().minus(balanceTarget).getDegrees());
+                        if (Math.abs(pitch) >= AUTO_BALANCE_TOLERANCE_DEGREES && Math.abs(pitch) > Math.abs(roll)) {
+                                chassisSpeeds.vyMetersPerSecond = yPID.calculate(-MathUtil.inputModulus(pitch - balanceDegrees, -180, 180));
+                        } else if (Math.abs(roll) >= AUTO_BALANCE_TOLERANCE_DEGREES && Math.abs(roll) > Math.abs(pitch)) {
+                                chassisSpeeds.vxMetersPerSecond = xPID.calculate(-MathUtil.inputModulus(roll - balanceDegrees, -180, 180));
                         }else {
                                 chassisSpeeds.vyMetersPerSecond = 0;
                                 chassisSpeeds.vxMetersPerSecond = 0;
@@ -296,25 +569,63 @@ public class DrivetrainSubsystem extends SubsystemBase {
                                 yPID.reset();
                         }
 
-                        if(balanceTargetOriginalPose.getTranslation().getDistance(getPose().getTranslation()) > MAX_AUTO_BALANCE_TRANSLATION_METERS ) {
+                        if(Math.hypot(poseX - balanceOriginalX, poseY - balanceOriginalY) > MAX_AUTO_BALANCE_TRANSLATION_METERS ) {
                                 setBalanceTarget(null);
                                 DriverStation.reportError("Auto balance disabled as measured translation has exceeded safety limit.", false);
                         }
-                        
+
+                }
+
+                fastKinematics.toModuleStates(chassisSpeeds.vxMetersPerSecond, chassisSpeeds.vyMetersPerSecond,
+                                chassisSpeeds.omegaRadiansPerSecond, moduleSpeeds, moduleAngles);
+                FastSwerveKinematics.desaturateWheelSpeeds(moduleSpeeds, MAX_VELOCITY_METERS_PER_SECOND);
+                InputLatency.stamp(InputLatency.KINEMATICS);
+
+                if (CLOSED_LOOP_DRIVE_ENABLED) {
+                        for (int i = 0; i < 4; i++) {
+                                neoModules[i].setVelocity(moduleSpeeds[i], moduleAngles[i]);
+                        }
+                } else {
+                        frontLeftModule.set(moduleSpeeds[0] / MAX_VELOCITY_METERS_PER_SECOND * MAX_VOLTAGE, moduleAngles[0]);
+                        frontRightModule.set(moduleSpeeds[1] / MAX_VELOCITY_METERS_PER_SECOND * MAX_VOLTAGE, moduleAngles[1]);
+                        backLeftModule.set(moduleSpeeds[2] / MAX_VELOCITY_METERS_PER_SECOND * MAX_VOLTAGE, moduleAngles[2]);
+                        backRightModule.set(moduleSpeeds[3] / MAX_VELOCITY_METERS_PER_SECOND * MAX_VOLTAGE, moduleAngles[3]);
                 }
+                InputLatency.modulesSet();
 
-                states = kinematics.toSwerveModuleStates(chassisSpeeds);
-                SwerveDriveKinematics.desaturateWheelSpeeds(states, MAX_VELOCITY_METERS_PER_SECOND);
+                if (!highRateOdometry) {
+                        updateOdometry();
+                }
+                updateField();
+                gyroRollSignal.set(roll);
+                gyroPitchSignal.set(pitch);
+                balanceTargetSignal.set(getBalanceTarget() != null);
+                LoopProfiler.end(profilerId);
+        }
 
-                frontLeftModule.set(states[0].speedMetersPerSecond / MAX_VELOCITY_METERS_PER_SECOND * MAX_VOLTAGE, states[0].angle.getRadians());
-                frontRightModule.set(states[1].speedMetersPerSecond / MAX_VELOCITY_METERS_PER_SECOND * MAX_VOLTAGE, states[1].angle.getRadians());
-                backLeftModule.set(states[2].speedMetersPerSecond / MAX_VELOCITY_METERS_PER_SECOND * MAX_VOLTAGE, states[2].angle.getRadians());
-                backRightModule.set(states[3].speedMetersPerSecond / MAX_VELOCITY_METERS_PER_SECOND * MAX_VOLTAGE, states[3].angle.getRadians());
+        /* Steps the physics model with this loop's module commands, after periodic() */
+        @Override
+        public void simulationPeriodic() {
+                for (int i = 0; i < 4; i++) {
+                        if (CLOSED_LOOP_DRIVE_ENABLED) {
+                                // What the SPARK MAX velocity loop would output, against the speed along the commanded direction
+                                double measured = sim.getDriveVelocity(i) * Math.cos(sim.getSteerAngle(i) - moduleAngles[i]);
+                                simDriveVoltages[i] = DRIVE_KS * Math.signum(moduleSpeeds[i]) + DRIVE_KV * moduleSpeeds[i]
+                                                + DRIVE_VELOCITY_P_COEFF * MAX_VOLTAGE * (moduleSpeeds[i] - measured);
+                        } else {
+                                simDriveVoltages[i] = moduleSpeeds[i] / MAX_VELOCITY_METERS_PER_SECOND * MAX_VOLTAGE;
+                        }
+                        sim.setModule(i, simDriveVoltages[i], moduleAngles[i]);
+                }
+                sim.update(Robot.kDefaultPeriod);
+                updateSimulatedGyro();
+                field.getObject("Simulated Robot").setPose(sim.getX(), sim.getY(), new Rotation2d(sim.getHeading()));
+        }
 
-                updatePose();
-                SmartDashboard.putNumber("Gyro Roll", getGyroscopeRoll().getDegrees());
-                SmartDashboard.putNumber("Gyro Pitch", getGyroscopePitch().getDegrees());
-                SmartDashboard.putBoolean("Balance Target", getBalanceTarget() != null);
+        /* Mirrors the simulated gyro onto the navX sim device, clockwise positive like the real one */
+        private void updateSimulatedGyro() {
+                if (navxSimYaw != null) {
+                        navxSimYaw.set(-Math.toDegrees(readGyroscopeRadians()));
+                }
         }
 }
-
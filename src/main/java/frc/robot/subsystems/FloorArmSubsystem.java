@@ -6,31 +6,93 @@ package frc.robot.subsystems;
 
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.CANSparkMaxLowLevel.MotorType;
+import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
 import com.revrobotics.SparkMaxAbsoluteEncoder;
 import com.revrobotics.CANSparkMax.SoftLimitDirection;
 
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Nat;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.controller.LinearQuadraticRegulator;
 import edu.wpi.first.math.controller.PIDController;
-import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
-import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
+import edu.wpi.first.math.estimator.KalmanFilter;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N2;
+import edu.wpi.first.math.system.LinearSystem;
+import edu.wpi.first.math.system.LinearSystemLoop;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.SettleDetector;
+import frc.robot.util.SensorSnapshot;
+import frc.robot.util.Telemetry;
 
 public class FloorArmSubsystem extends SubsystemBase {
-  private ShuffleboardTab floorArmTab = Shuffleboard.getTab("FloorArm");
   private CANSparkMax floorArmMotor;
   private PIDController pid;
   private SparkMaxAbsoluteEncoder absEncoder;
+  private final SensorSnapshot sensors;
+  private final int profilerId = LoopProfiler.register("FloorArmSubsystem");
+  private final Telemetry.DoubleSignal positionSignal = Telemetry.doubleSignal("/Shuffleboard/FloorArm/Position");
   private double targetPosition = Constants.FLOOR_ARM_INSIDE_ROBOT_POSITION;
+  private final SettleDetector settle = new SettleDetector(Constants.FLOOR_ARM_SETTLED_POSITION_TOLERANCE,
+    Constants.FLOOR_ARM_SETTLED_VELOCITY_TOLERANCE, Constants.FLOOR_ARM_SETTLED_LOOPS, TimedRobot.kDefaultPeriod);
+  private final Telemetry.DoubleSignal arrivalSignal = Telemetry.doubleSignal("/Shuffleboard/FloorArm/Arrival Seconds");
 
-  public FloorArmSubsystem() {
+  /*
+   * State space mode, only when FLOOR_ARM_STATE_SPACE_ENABLED. States are angle (rad) and angular
+   * velocity (rad/s), the angle unwrapped so the 0/1 seam of the encoder is just another point.
+   * The Kalman filter fuses the noisy absolute encoder with the plant model, LQR tracks a
+   * trapezoidal profile towards the goal.
+   */
+  private static final double PERIOD = TimedRobot.kDefaultPeriod;
+  private static final int FRAME_PERIOD_MS = 20;
+  private LinearSystemLoop<N2, N1, N1> loop;
+  private final TrapezoidProfile.Constraints constraints = new TrapezoidProfile.Constraints(
+    Constants.FLOOR_ARM_MAX_VELOCITY * 2 * Math.PI, Constants.FLOOR_ARM_MAX_ACCELERATION * 2 * Math.PI);
+  private TrapezoidProfile.State reference = new TrapezoidProfile.State();
+  private TrapezoidProfile.State goal = new TrapezoidProfile.State();
+  private boolean goalChanged = true;
+  private boolean loopNeedsReset = true;
+  private final Telemetry.DoubleSignal estimatedPositionSignal = Telemetry.doubleSignal("/Shuffleboard/FloorArm/Estimated Position");
+  private final Telemetry.DoubleSignal estimatedVelocitySignal = Telemetry.doubleSignal("/Shuffleboard/FloorArm/Estimated Velocity");
+  private final Telemetry.DoubleSignal modelErrorSignal = Telemetry.doubleSignal("/Shuffleboard/FloorArm/Model Error");
+  private final Telemetry.DoubleSignal voltageSignal = Telemetry.doubleSignal("/Shuffleboard/FloorArm/Voltage");
+
+  public FloorArmSubsystem(SensorSnapshot sensors) {
+    this.sensors = sensors;
     floorArmMotor = new CANSparkMax(Constants.FLOOR_ARM_MOTOR, MotorType.kBrushless);
     floorArmMotor.setInverted(false);
     pid = new PIDController(Constants.FLOOR_ARM_P_COEFF,Constants.FLOOR_ARM_I_COEFF,Constants.FLOOR_ARM_D_COEFF);
     pid.enableContinuousInput(0, 1);
     setTargetPosition(targetPosition);
     absEncoder = floorArmMotor.getAbsoluteEncoder(SparkMaxAbsoluteEncoder.Type.kDutyCycle);
-    floorArmTab.addNumber("Position", () -> getPosition());
+    // The absolute encoder position frame defaults to 200 ms, too slow to see the arm arrive
+    floorArmMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus5, FRAME_PERIOD_MS);
     setSoftLimit();
+
+    if (Constants.FLOOR_ARM_STATE_SPACE_ENABLED) {
+      LinearSystem<N2, N1, N1> plant = LinearSystemId.createSingleJointedArmSystem(
+        DCMotor.getNEO(1), Constants.FLOOR_ARM_MOMENT_OF_INERTIA, Constants.FLOOR_ARM_GEARING);
+      KalmanFilter<N2, N1, N1> observer = new KalmanFilter<>(Nat.N2(), Nat.N1(), plant,
+        VecBuilder.fill(Constants.FLOOR_ARM_MODEL_POSITION_STDDEV, Constants.FLOOR_ARM_MODEL_VELOCITY_STDDEV),
+        VecBuilder.fill(Constants.FLOOR_ARM_ENCODER_STDDEV),
+        PERIOD);
+      LinearQuadraticRegulator<N2, N1, N1> controller = new LinearQuadraticRegulator<>(plant,
+        VecBuilder.fill(Constants.FLOOR_ARM_LQR_POSITION_TOLERANCE, Constants.FLOOR_ARM_LQR_VELOCITY_TOLERANCE),
+        VecBuilder.fill(Constants.FLOOR_ARM_MAX_VOLTAGE),
+        PERIOD);
+      // The encoder reading is one status frame and a CAN hop old by the time it's used
+      controller.latencyCompensate(plant, PERIOD, Constants.FLOOR_ARM_MEASUREMENT_DELAY_SECONDS);
+      loop = new LinearSystemLoop<>(plant, controller, observer, Constants.FLOOR_ARM_MAX_VOLTAGE, PERIOD);
+
+      floorArmMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus6, FRAME_PERIOD_MS);
+    }
   }
   
    public void setSoftLimit(){
@@ -45,21 +107,85 @@ public class FloorArmSubsystem extends SubsystemBase {
   }
 
 
+  /* Called by RobotContainer at the start of each loop, everything else reads the snapshot */
+  public void readSensors() {
+    sensors.setFloorArmPosition(absEncoder.getPosition());
+  }
+
   public double getPosition() {
-    return absEncoder.getPosition();
+    return sensors.getFloorArmPosition();
   }
 
   public void setTargetPosition(double position){
     targetPosition = position;
     pid.setSetpoint(targetPosition);
+    goalChanged = true;
+    settle.setTarget(targetPosition, sensors.getTimestamp());
+  }
+
+  /* In position and stopped at the target, and in state space mode the profile is finished */
+  public boolean isAtTarget() {
+    return settle.isSettled();
   }
 
   public double getTargetPosition() {
     return targetPosition;
   }
 
+  /* Encoder rotations to radians, continuing from the angle near it so it never jumps at the seam */
+  private static double unwrap(double position, double near) {
+    return near + MathUtil.angleModulus(position * 2 * Math.PI - near);
+  }
+
+  private void updateStateSpace() {
+    double estimate = loop.getXHat(0);
+    if (loopNeedsReset) {
+      double angle = getPosition() * 2 * Math.PI;
+      loop.reset(VecBuilder.fill(angle, 0));
+      reference = new TrapezoidProfile.State(angle, 0);
+      estimate = angle;
+      loopNeedsReset = false;
+      goalChanged = true;
+    }
+    if (goalChanged) {
+      // Shortest way round, same as the PID's continuous input
+      goal = new TrapezoidProfile.State(unwrap(targetPosition, estimate), 0);
+      goalChanged = false;
+    }
+
+    double measurement = unwrap(getPosition(), estimate);
+    modelErrorSignal.set((measurement - estimate) / (2 * Math.PI));
+    reference = new TrapezoidProfile(constraints, goal, reference).calculate(PERIOD);
+    loop.setNextR(VecBuilder.fill(reference.position, reference.velocity));
+    loop.correct(VecBuilder.fill(measurement));
+    loop.predict(PERIOD);
+
+    // The plant has no gravity in it, cancel gravity outside the loop
+    double gravity = Constants.FLOOR_ARM_KG
+      * Math.cos(reference.position - Constants.FLOOR_ARM_HORIZONTAL_POSITION * 2 * Math.PI);
+    double volts = MathUtil.clamp(loop.getU(0) + gravity, -Constants.FLOOR_ARM_MAX_VOLTAGE, Constants.FLOOR_ARM_MAX_VOLTAGE);
+    floorArmMotor.setVoltage(Constants.FLOOR_ARM_VOLTAGE_DIRECTION * volts);
+
+    estimatedPositionSignal.set(MathUtil.inputModulus(loop.getXHat(0) / (2 * Math.PI), 0, 1));
+    estimatedVelocitySignal.set(loop.getXHat(1) / (2 * Math.PI));
+    voltageSignal.set(volts);
+  }
+
   @Override
   public void periodic() {
-    floorArmMotor.set(pid.calculate(getPosition()));
+    LoopProfiler.begin(profilerId);
+    if (loop == null) {
+      floorArmMotor.set(pid.calculate(getPosition()));
+    } else if (DriverStation.isDisabled()) {
+      // Start again from wherever it was moved to by hand
+      loopNeedsReset = true;
+    } else {
+      updateStateSpace();
+    }
+    if (settle.update(getPosition(), sensors.getTimestamp(), loop == null || reference.equals(goal))) {
+      arrivalSignal.set(settle.getArrivalSeconds());
+    }
+    positionSignal.set(getPosition());
+    LoopProfiler.end(profilerId);
   }
 }
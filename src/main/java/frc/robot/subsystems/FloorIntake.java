@@ -5,33 +5,82 @@
 package frc.robot.subsystems;
 import frc.robot.Constants;
 import com.revrobotics.CANSparkMax;
+import com.revrobotics.RelativeEncoder;
 import com.revrobotics.CANSparkMaxLowLevel.MotorType;
+import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import edu.wpi.first.wpilibj2.command.button.Trigger;
+import frc.robot.util.GamePieceDetector;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.Telemetry;
 
 public class FloorIntake extends SubsystemBase {
   /** Creates a new FloorIntake. */
   private CANSparkMax intakeMotor = new CANSparkMax( Constants.FLOOR_INTAKE_MOTOR, MotorType.kBrushless);
+  private final int profilerId = LoopProfiler.register("FloorIntake");
+  private final Telemetry.DoubleSignal filteredCurrentSignal = Telemetry.doubleSignal("/Shuffleboard/FloorIntake/Filtered Current");
+  private final Telemetry.BooleanSignal hasGamePieceSignal = Telemetry.booleanSignal("/Shuffleboard/FloorIntake/Has Game Piece");
+
+  // Current and speed are sampled off the main loop, faster than it runs
+  private final RelativeEncoder encoder = intakeMotor.getEncoder();
+  private final GamePieceDetector detector = new GamePieceDetector(Constants.FLOOR_INTAKE_ACQUIRE_CURRENT, Constants.FLOOR_INTAKE_LOST_CURRENT);
+  private final Notifier sampler = new Notifier(this::sampleRollers);
+  private final Trigger hasGamePiece = new Trigger(detector::hasPiece);
+  private volatile double output = 0;
+
   public FloorIntake() {
     intakeMotor.setInverted(true);
     intakeMotor.setSmartCurrentLimit(Constants.FLOOR_INTAKE_CURRENT_LIMIT);
+    intakeMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus1, (int) (Constants.GAME_PIECE_SAMPLE_PERIOD_SECONDS * 1000));
+    sampler.setName("Floor Intake Sampler");
+    sampler.startPeriodic(Constants.GAME_PIECE_SAMPLE_PERIOD_SECONDS);
+  }
+
+  private void sampleRollers() {
+    detector.sample(intakeMotor.getOutputCurrent(), encoder.getVelocity(), output, Timer.getFPGATimestamp());
+  }
+
+  private void setOutput(double speed) {
+    output = speed;
+    intakeMotor.set(speed);
+  }
+
+  /* True while a cube is in the floor intake, from the roller current */
+  public Trigger hasGamePiece() {
+    return hasGamePiece;
   }
 
   public void intakeStop(){
-    intakeMotor.set(0);
+    setOutput(0);
   }
 
   
   public void intakePickup(double speed){
-    intakeMotor.set(speed*-1);
+    setOutput(speed*-1);
   }
 
   public void intakeDrop(double speed){
-    intakeMotor.set(speed * 1);
+    if (speed != output) {
+      // Drop commands set this every loop, only the start of an eject releases the piece
+      detector.released();
+    }
+    setOutput(speed * 1);
+  }
+
+  /* Just enough to keep the cube in, without burning the motor against it */
+  public void holdPiece(){
+    intakePickup(Constants.FLOOR_INTAKE_HOLD_SPEED);
   }
 
 
   @Override
   public void periodic() {
     // This method will be called once per scheduler run
+    LoopProfiler.begin(profilerId);
+    filteredCurrentSignal.set(detector.getFilteredCurrent());
+    hasGamePieceSignal.set(detector.hasPiece());
+    LoopProfiler.end(profilerId);
   }
 }
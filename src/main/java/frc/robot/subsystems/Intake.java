@@ -5,22 +5,61 @@
 package frc.robot.subsystems;
 import frc.robot.Constants;
 import com.revrobotics.CANSparkMax;
+import com.revrobotics.RelativeEncoder;
 import com.revrobotics.CANSparkMaxLowLevel.MotorType;
-import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
-import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
+import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import edu.wpi.first.wpilibj2.command.button.Trigger;
+import frc.robot.util.GamePieceDetector;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.Telemetry;
 
 public class Intake extends SubsystemBase {
 
   /** Creates a new Intake. */
-  private ShuffleboardTab armIntakeTab = Shuffleboard.getTab("Intake");
   private CANSparkMax intakeMotor = new CANSparkMax( Constants.INTAKE_MOTOR, MotorType.kBrushless);
-  
+  private final int profilerId = LoopProfiler.register("Intake");
+  private final Telemetry.DoubleSignal currentSignal = Telemetry.doubleSignal("/Shuffleboard/Intake/Current");
+  private final Telemetry.DoubleSignal filteredCurrentSignal = Telemetry.doubleSignal("/Shuffleboard/Intake/Filtered Current");
+  private final Telemetry.BooleanSignal hasGamePieceSignal = Telemetry.booleanSignal("/Shuffleboard/Intake/Has Game Piece");
+
+  // Current and speed are sampled off the main loop, faster than it runs
+  private final RelativeEncoder encoder = intakeMotor.getEncoder();
+  private final GamePieceDetector detector = new GamePieceDetector(Constants.INTAKE_ACQUIRE_CURRENT, Constants.INTAKE_LOST_CURRENT);
+  private final Notifier sampler = new Notifier(this::sampleRollers);
+  private final Trigger hasGamePiece = new Trigger(detector::hasPiece);
+  private volatile double output = 0;
 
   public Intake() {
     intakeMotor.setInverted(true);
-    armIntakeTab.addNumber("Current", () -> getCurrent());
     intakeMotor.setSmartCurrentLimit(Constants.INTAKE_CURRENT_LIMIT);  
+    intakeMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus1, (int) (Constants.GAME_PIECE_SAMPLE_PERIOD_SECONDS * 1000));
+    sampler.setName("Intake Sampler");
+    sampler.startPeriodic(Constants.GAME_PIECE_SAMPLE_PERIOD_SECONDS);
+  }
+
+  private void sampleRollers() {
+    detector.sample(intakeMotor.getOutputCurrent(), encoder.getVelocity(), output, Timer.getFPGATimestamp());
+  }
+
+  private void setOutput(double speed) {
+    output = speed;
+    intakeMotor.set(speed);
+  }
+
+  /* Drop commands set this every loop, only the start of an eject releases the piece */
+  private void eject(double speed) {
+    if (speed != output) {
+      detector.released();
+    }
+    setOutput(speed);
+  }
+
+  /* True while a cone or cube is in the intake, from the roller current */
+  public Trigger hasGamePiece() {
+    return hasGamePiece;
   }
 
   public double getCurrent(){
@@ -28,27 +67,41 @@ public class Intake extends SubsystemBase {
   }
 
   public void intakeStop(){
-    intakeMotor.set(0);
+    setOutput(0);
   }
 
   public void conePickup(double speed){
-    intakeMotor.set(speed * 1);
+    setOutput(speed * 1);
   }
 
   public void coneDrop(double speed){
-    intakeMotor.set(speed * -1); 
+    eject(speed * -1); 
   }
 
   public void cubeDrop(double speed){
-    intakeMotor.set(speed * 1);
+    eject(speed * 1);
   }
 
   public void cubePickup(double speed){
-    intakeMotor.set(speed * -1);
+    setOutput(speed * -1);
+  }
+
+  /* Just enough to keep the piece in, without burning the motor against it */
+  public void holdCone(){
+    conePickup(Constants.INTAKE_HOLD_SPEED);
+  }
+
+  public void holdCube(){
+    cubePickup(Constants.INTAKE_HOLD_SPEED);
   }
 
   @Override
   public void periodic() {
     // This method will be called once per scheduler run
+    LoopProfiler.begin(profilerId);
+    currentSignal.set(getCurrent());
+    filteredCurrentSignal.set(detector.getFilteredCurrent());
+    hasGamePieceSignal.set(detector.hasPiece());
+    LoopProfiler.end(profilerId);
   }
 }
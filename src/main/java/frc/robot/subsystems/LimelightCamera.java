@@ -0,0 +1,256 @@
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.DoubleSubscriber;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.networktables.TimestampedDouble;
+import edu.wpi.first.networktables.TimestampedDoubleArray;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import frc.robot.Constants;
+import frc.robot.util.FieldTags;
+
+/**
+ * One Limelight. Drains its NT4 queues into reusable frames once a loop, and gives each frame a
+ * standard deviation from how many tags it saw, how big they were and how far away they are.
+ * Registered with, and read through, {@link Vision}.
+ */
+public class LimelightCamera {
+  public static final int MAX_FRAMES_PER_LOOP = 8; // limelight runs at up to 90fps, ~2 per loop
+  private static final double[] NO_POSE = new double[0];
+
+  private final String name;
+  private final NetworkTable table;
+  private final Transform3d robotToCamera;
+  private final int pipeline;
+
+  private final SampledValue targetValid;
+  private final SampledValue targetXOffset;
+  private final SampledValue targetArea; // proxy for distance from target
+  private final SampledValue targetID;
+  private final SampledValue pipelineLatency;
+  private final SampledValue captureLatency;
+  private final DoubleArraySubscriber botposeBlue;
+  private final DoubleArraySubscriber botposeRed;
+
+  private final Vision.Frame[] frames = new Vision.Frame[MAX_FRAMES_PER_LOOP];
+  private int frameCount = 0;
+
+  /**
+   * @param name NetworkTables name of the limelight, like "limelight-ups"
+   * @param robotToCamera where the camera is on the robot
+   * @param pipeline the AprilTag pipeline index
+   */
+  public LimelightCamera(String name, Transform3d robotToCamera, int pipeline) {
+    this.name = name;
+    this.robotToCamera = robotToCamera;
+    this.pipeline = pipeline;
+    table = NetworkTableInstance.getDefault().getTable(name);
+    targetValid = new SampledValue(table, "tv");
+    targetID = new SampledValue(table, "tid");
+    targetXOffset = new SampledValue(table, "tx");
+    targetArea = new SampledValue(table, "ta");
+    pipelineLatency = new SampledValue(table, "tl");
+    captureLatency = new SampledValue(table, "cl");
+    botposeBlue = table.getDoubleArrayTopic("botpose_wpiblue").subscribe(NO_POSE,
+      PubSubOption.keepDuplicates(true), PubSubOption.pollStorage(MAX_FRAMES_PER_LOOP));
+    botposeRed = table.getDoubleArrayTopic("botpose_wpired").subscribe(NO_POSE,
+      PubSubOption.keepDuplicates(true), PubSubOption.pollStorage(MAX_FRAMES_PER_LOOP));
+    for (int i = 0; i < frames.length; i++) {
+      frames[i] = new Vision.Frame();
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getPipeline() {
+    return pipeline;
+  }
+
+  public Transform3d getRobotToCamera() {
+    return robotToCamera;
+  }
+
+  public int getFrameCount() {
+    return frameCount;
+  }
+
+  public Vision.Frame getFrame(int index) {
+    return frames[index];
+  }
+
+  public Pose2d getBotpose() {
+    double[] arr = DriverStation.getAlliance() == Alliance.Red ? botposeRed.get() : botposeBlue.get();
+    if(arr.length < 6) {
+      return new Pose2d();
+    }
+    return new Pose2d(arr[0], arr[1], Rotation2d.fromDegrees(arr[5]));
+  }
+
+  public boolean hasTarget() {
+    return targetValid.value == 1;
+  }
+
+  public int getTargetID() {
+    return (int) targetID.value;
+  }
+
+  public double getTargetArea() {
+    return targetArea.value;
+  }
+
+  public double getTargetXOffsetDegrees() {
+    return targetXOffset.value;
+  }
+
+  public void setPipeline(int index) {
+    table.getEntry("pipeline").setNumber(index);
+  }
+
+  public void setCamMode(int mode) {
+    table.getEntry("camMode").setNumber(mode);
+  }
+
+  public void setLEDMode(int mode) {
+    table.getEntry("LEDMode").setNumber(mode);
+  }
+
+  /* Drains every botpose update since last loop into frames, oldest first */
+  void readFrames() {
+    TimestampedDoubleArray[] bluePoses = botposeBlue.readQueue();
+    TimestampedDoubleArray[] redPoses = botposeRed.readQueue();
+    boolean red = DriverStation.getAlliance() == Alliance.Red;
+    TimestampedDoubleArray[] poses = red ? redPoses : bluePoses;
+    targetValid.drain();
+    targetID.drain();
+    targetXOffset.drain();
+    targetArea.drain();
+    pipelineLatency.drain();
+    captureLatency.drain();
+
+    // If we fell behind, only keep the newest frames
+    int first = Math.max(0, poses.length - frames.length);
+    frameCount = 0;
+    for (int i = first; i < poses.length; i++) {
+      long time = poses[i].serverTime;
+      double[] arr = poses[i].value;
+      Vision.Frame frame = frames[frameCount++];
+
+      // The limelight publishes tv, tid, etc. alongside botpose, use the values from the same update
+      frame.camera = this;
+      frame.hasTarget = targetValid.at(time) == 1 && arr.length >= 6;
+      frame.targetID = (int) targetID.at(time);
+      frame.targetXOffsetDegrees = targetXOffset.at(time);
+      frame.targetArea = targetArea.at(time);
+      frame.pipelineLatencyMs = pipelineLatency.at(time);
+      frame.captureLatencyMs = captureLatency.at(time);
+
+      double latencyMs = arr.length >= 7 ? arr[6] : frame.pipelineLatencyMs + frame.captureLatencyMs;
+      frame.timestamp = time / 1e6 - latencyMs / 1000.0;
+
+      if(frame.hasTarget) {
+        frame.x = arr[0];
+        frame.y = arr[1];
+        frame.rotationRadians = Math.toRadians(arr[5]);
+        if(arr.length >= 11) {
+          // Newer firmware reports how many tags went into the pose and their average distance
+          frame.tagCount = Math.max(1, (int) arr[7]);
+          frame.distanceMeters = arr[9];
+        } else {
+          frame.tagCount = 1;
+          frame.distanceMeters = distanceToTag(frame, red);
+        }
+        setStdDevs(frame);
+      } else {
+        frame.tagCount = 0;
+        frame.distanceMeters = 0;
+      }
+    }
+
+    // Catch up to the newest values for the getters above
+    targetValid.at(Long.MAX_VALUE);
+    targetID.at(Long.MAX_VALUE);
+    targetXOffset.at(Long.MAX_VALUE);
+    targetArea.at(Long.MAX_VALUE);
+    pipelineLatency.at(Long.MAX_VALUE);
+    captureLatency.at(Long.MAX_VALUE);
+  }
+
+  /* Distance from the camera to the primary tag, from the frame's pose and the field layout */
+  private double distanceToTag(Vision.Frame frame, boolean red) {
+    int id = frame.targetID;
+    if(!FieldTags.has(id)) {
+      return 0;
+    }
+    double tagX = FieldTags.getX(id);
+    double tagY = FieldTags.getY(id);
+    if(red) {
+      // Red origin is the opposite corner of the field, rotated 180 degrees
+      tagX = FieldTags.getFieldLength() - tagX;
+      tagY = FieldTags.getFieldWidth() - tagY;
+    }
+    double cos = Math.cos(frame.rotationRadians);
+    double sin = Math.sin(frame.rotationRadians);
+    double cameraX = frame.x + robotToCamera.getX() * cos - robotToCamera.getY() * sin;
+    double cameraY = frame.y + robotToCamera.getX() * sin + robotToCamera.getY() * cos;
+    double dx = tagX - cameraX;
+    double dy = tagY - cameraY;
+    double dz = FieldTags.getZ(id) - robotToCamera.getZ();
+    return Math.sqrt(dx * dx + dy * dy + dz * dz);
+  }
+
+  /*
+   * Error grows with the square of the distance, and with smaller (fewer pixel) targets, and
+   * shrinks with the number of tags. A single tag's heading is too ambiguous to use.
+   */
+  private static void setStdDevs(Vision.Frame frame) {
+    double distanceRatio = frame.distanceMeters / Constants.VISION_STD_DEV_REFERENCE_DISTANCE_METERS;
+    double distanceFactor = 1 + distanceRatio * distanceRatio;
+    double areaFactor = Math.sqrt(Constants.VISION_STD_DEV_REFERENCE_AREA / Math.max(frame.targetArea, 1e-3));
+    areaFactor = Math.max(Constants.VISION_STD_DEV_MIN_AREA_FACTOR, Math.min(Constants.VISION_STD_DEV_MAX_AREA_FACTOR, areaFactor));
+    double scale = distanceFactor * areaFactor / Math.sqrt(frame.tagCount);
+
+    frame.xyStdDev = Constants.VISION_STD_DEVS[0] * scale;
+    if(frame.tagCount > 1) {
+      frame.thetaStdDev = Constants.VISION_STD_DEVS[2] * scale;
+    } else {
+      frame.thetaStdDev = Constants.VISION_SINGLE_TAG_THETA_STD_DEV;
+    }
+  }
+
+  /* A limelight value that is read in step with the botpose updates */
+  private static class SampledValue {
+    private static final TimestampedDouble[] EMPTY = new TimestampedDouble[0];
+
+    private final DoubleSubscriber subscriber;
+    private TimestampedDouble[] queue = EMPTY;
+    private int cursor = 0;
+    private double value = 0;
+
+    SampledValue(NetworkTable table, String key) {
+      subscriber = table.getDoubleTopic(key).subscribe(0,
+        PubSubOption.keepDuplicates(true), PubSubOption.pollStorage(MAX_FRAMES_PER_LOOP));
+    }
+
+    void drain() {
+      queue = subscriber.readQueue();
+      cursor = 0;
+    }
+
+    /* Latest value published at or before serverTime, must be called with increasing times */
+    double at(long serverTime) {
+      while (cursor < queue.length && queue[cursor].serverTime <= serverTime) {
+        value = queue[cursor].value;
+        cursor++;
+      }
+      return value;
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package frc.robot.subsystems;
+
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.sensors.AbsoluteSensorRange;
+import com.ctre.phoenix.sensors.CANCoder;
+import com.ctre.phoenix.sensors.CANCoderConfiguration;
+import com.ctre.phoenix.sensors.CANCoderStatusFrame;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.CANSparkMax.ControlType;
+import com.revrobotics.CANSparkMax.IdleMode;
+import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
+import com.revrobotics.CANSparkMaxLowLevel.MotorType;
+import com.revrobotics.RelativeEncoder;
+import com.revrobotics.SparkMaxPIDController;
+import com.revrobotics.SparkMaxPIDController.ArbFFUnits;
+import com.swervedrivespecialties.swervelib.ModuleConfiguration;
+import com.swervedrivespecialties.swervelib.SwerveModule;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.SimpleMotorFeedforward;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants;
+
+/**
+ * MK4 NEO swerve module that closes the drive velocity loop on the SPARK MAX (1 kHz) with a
+ * voltage feedforward from the roboRIO, so wheel speed doesn't change with battery voltage.
+ * Steering uses the SPARK MAX position loop seeded from the CANCoder, like the SDS modules: the
+ * CANCoder is configured with the offset, range and direction the SDS builder uses, and the NEO
+ * encoder is re-seeded from it whenever the module has been still for a while.
+ *
+ * <p>Also implements the SDS SwerveModule interface, set() still drives open loop. The drivetrain
+ * uses these modules for high rate odometry too, since it needs the SPARK MAX frame periods.
+ */
+public class NeoSwerveModule implements SwerveModule {
+    private static final double STEER_P = 1.0;
+    private static final double STEER_I = 0.0;
+    private static final double STEER_D = 0.1;
+    private static final int STEER_CURRENT_LIMIT = 20;
+
+    // Same as the SDS CANCoder and NEO steer builders
+    private static final int CAN_TIMEOUT_MS = 250;
+    private static final int ABSOLUTE_ENCODER_PERIOD_MS = 10;
+    private static final int RESEED_ITERATIONS = 500;
+    private static final double RESEED_MAX_VELOCITY = Math.toRadians(0.5);
+    private static final int SEED_ATTEMPTS = 10;
+    private static final double SEED_RETRY_SECONDS = 0.02;
+
+    private final CANSparkMax driveMotor;
+    private final CANSparkMax steerMotor;
+    private final RelativeEncoder driveEncoder;
+    private final RelativeEncoder steerEncoder;
+    private final SparkMaxPIDController drivePID;
+    private final SparkMaxPIDController steerPID;
+    private final CANCoder absoluteEncoder;
+    private final int steerEncoderPort;
+    private boolean seeded = false;
+    private int stationaryIterations = 0;
+    private final SimpleMotorFeedforward driveFeedforward = new SimpleMotorFeedforward(
+        Constants.DRIVE_KS, Constants.DRIVE_KV, Constants.DRIVE_KA);
+
+    /**
+     * @param steerOffset radians, written into the CANCoder's magnet offset like the SDS helpers do
+     */
+    public NeoSwerveModule(ModuleConfiguration moduleConfiguration, int driveMotorPort, int steerMotorPort,
+            int steerEncoderPort, double steerOffset) {
+        double metersPerRotation = moduleConfiguration.getWheelDiameter() * Math.PI * moduleConfiguration.getDriveReduction();
+        double radiansPerRotation = 2.0 * Math.PI * moduleConfiguration.getSteerReduction();
+
+        driveMotor = new CANSparkMax(driveMotorPort, MotorType.kBrushless);
+        driveMotor.restoreFactoryDefaults();
+        driveMotor.setInverted(moduleConfiguration.isDriveInverted());
+        driveMotor.setIdleMode(IdleMode.kBrake);
+        driveMotor.enableVoltageCompensation(DrivetrainSubsystem.MAX_VOLTAGE);
+        driveMotor.setSmartCurrentLimit(Constants.DRIVE_CURRENT_LIMIT);
+
+        driveEncoder = driveMotor.getEncoder();
+        driveEncoder.setPositionConversionFactor(metersPerRotation);
+        driveEncoder.setVelocityConversionFactor(metersPerRotation / 60.0);
+
+        drivePID = driveMotor.getPIDController();
+        drivePID.setFeedbackDevice(driveEncoder);
+        drivePID.setP(Constants.DRIVE_VELOCITY_P_COEFF);
+        drivePID.setI(Constants.DRIVE_VELOCITY_I_COEFF);
+        drivePID.setD(Constants.DRIVE_VELOCITY_D_COEFF);
+        drivePID.setFF(0); // feedforward is sent in volts with each setpoint
+
+        steerMotor = new CANSparkMax(steerMotorPort, MotorType.kBrushless);
+        steerMotor.restoreFactoryDefaults();
+        steerMotor.setInverted(!moduleConfiguration.isSteerInverted());
+        steerMotor.setIdleMode(IdleMode.kBrake);
+        steerMotor.enableVoltageCompensation(DrivetrainSubsystem.MAX_VOLTAGE);
+        steerMotor.setSmartCurrentLimit(STEER_CURRENT_LIMIT);
+
+        steerEncoder = steerMotor.getEncoder();
+        steerEncoder.setPositionConversionFactor(radiansPerRotation);
+        steerEncoder.setVelocityConversionFactor(radiansPerRotation / 60.0);
+
+        // The offset is applied here and only here, getAbsolutePosition() already includes it
+        this.steerEncoderPort = steerEncoderPort;
+        absoluteEncoder = new CANCoder(steerEncoderPort);
+        CANCoderConfiguration config = new CANCoderConfiguration();
+        config.absoluteSensorRange = AbsoluteSensorRange.Unsigned_0_to_360;
+        config.magnetOffsetDegrees = Math.toDegrees(steerOffset);
+        config.sensorDirection = false; // counter clockwise, the SDS default for MK4
+        checkError(absoluteEncoder.configAllSettings(config, CAN_TIMEOUT_MS), "configure");
+        checkError(absoluteEncoder.setStatusFramePeriod(CANCoderStatusFrame.SensorData,
+            ABSOLUTE_ENCODER_PERIOD_MS, CAN_TIMEOUT_MS), "set the status frame period of");
+
+        steerPID = steerMotor.getPIDController();
+        steerPID.setFeedbackDevice(steerEncoder);
+        steerPID.setP(STEER_P);
+        steerPID.setI(STEER_I);
+        steerPID.setD(STEER_D);
+        steerPID.setPositionPIDWrappingEnabled(true);
+        steerPID.setPositionPIDWrappingMinInput(0);
+        steerPID.setPositionPIDWrappingMaxInput(2.0 * Math.PI);
+
+        // The first frame may not be in yet, if it never arrives the module seeds itself later
+        for (int attempt = 0; attempt < SEED_ATTEMPTS && !seeded; attempt++) {
+            seeded = seedSteerEncoder();
+            if (!seeded) {
+                Timer.delay(SEED_RETRY_SECONDS);
+            }
+        }
+        if (!seeded) {
+            DriverStation.reportError("No valid reading from CANCoder " + steerEncoderPort
+                + ", steering is unseeded until one arrives", false);
+        }
+    }
+
+    private void checkError(ErrorCode error, String action) {
+        if (error != ErrorCode.OK) {
+            DriverStation.reportError("Failed to " + action + " CANCoder " + steerEncoderPort + ": " + error, false);
+        }
+    }
+
+    /* Sets the NEO steer encoder to the CANCoder angle, false if the reading isn't valid */
+    private boolean seedSteerEncoder() {
+        double angle = Math.toRadians(absoluteEncoder.getAbsolutePosition());
+        if (absoluteEncoder.getLastError() != ErrorCode.OK) {
+            return false;
+        }
+        steerEncoder.setPosition(MathUtil.inputModulus(angle, 0, 2.0 * Math.PI));
+        return true;
+    }
+
+    /*
+     * Called with every steer command. Until the first valid reading, tries every loop. After that
+     * it re-seeds once the module has been still for RESEED_ITERATIONS loops in a row, which
+     * corrects any slip between the NEO encoder and the wheel.
+     */
+    private void reseedIfStationary() {
+        if (!seeded) {
+            seeded = seedSteerEncoder();
+            return;
+        }
+        if (Math.abs(steerEncoder.getVelocity()) < RESEED_MAX_VELOCITY) {
+            if (++stationaryIterations >= RESEED_ITERATIONS) {
+                stationaryIterations = 0;
+                seedSteerEncoder();
+            }
+        } else {
+            stationaryIterations = 0;
+        }
+    }
+
+    /*
+     * Sends velocity (kStatus1) and position (kStatus2) from both motors every periodMs instead of
+     * the default 20 ms, so a faster odometry loop gets a new sample each time it runs.
+     */
+    public void setOdometryFramePeriod(int periodMs) {
+        driveMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus1, periodMs);
+        driveMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus2, periodMs);
+        steerMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus1, periodMs);
+        steerMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus2, periodMs);
+    }
+
+    /* Meters driven since the SPARK MAX powered on */
+    public double getDrivePosition() {
+        return driveEncoder.getPosition();
+    }
+
+    @Override
+    public double getDriveVelocity() {
+        return driveEncoder.getVelocity();
+    }
+
+    @Override
+    public double getSteerAngle() {
+        return MathUtil.inputModulus(steerEncoder.getPosition(), 0, 2.0 * Math.PI);
+    }
+
+    /* Open loop, same as the SDS modules */
+    @Override
+    public void set(double driveVoltage, double steerAngle) {
+        driveMotor.setVoltage(driveVoltage);
+        reseedIfStationary();
+        steerPID.setReference(MathUtil.inputModulus(steerAngle, 0, 2.0 * Math.PI), ControlType.kPosition);
+    }
+
+    /**
+     * Closed loop drive velocity. The state is optimized so the module never turns more than 90
+     * degrees, and the speed is scaled by how far the module still is from its target angle.
+     */
+    public void setVelocity(double speedMetersPerSecond, double angleRadians) {
+        reseedIfStationary();
+        double currentAngle = getSteerAngle();
+        double delta = MathUtil.angleModulus(angleRadians - currentAngle);
+        if (Math.abs(delta) > Math.PI / 2.0) {
+            speedMetersPerSecond = -speedMetersPerSecond;
+            angleRadians += Math.PI;
+            delta = MathUtil.angleModulus(delta + Math.PI);
+        }
+        // Cosine compensation, don't drive hard in the wrong direction while steering catches up
+        speedMetersPerSecond *= Math.cos(delta);
+
+        drivePID.setReference(speedMetersPerSecond, ControlType.kVelocity, 0,
+            driveFeedforward.calculate(speedMetersPerSecond), ArbFFUnits.kVoltage);
+        steerPID.setReference(MathUtil.inputModulus(angleRadians, 0, 2.0 * Math.PI), ControlType.kPosition);
+    }
+}
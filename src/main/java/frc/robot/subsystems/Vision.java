@@ -4,22 +4,32 @@
 
 package frc.robot.subsystems;
 import edu.wpi.first.math.geometry.Pose2d;
-import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.networktables.NetworkTable;
-import edu.wpi.first.networktables.NetworkTableEntry;
-import edu.wpi.first.networktables.NetworkTableInstance;
-import edu.wpi.first.wpilibj.DriverStation;
-import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Constants;
+import frc.robot.util.LoopProfiler;
 
+/**
+ * Every Limelight on the robot. Each camera's frames are drained once a loop and merged into one
+ * list ordered by capture time, so consumers like VisionPoseUpdate fuse every camera the same way.
+ * The single camera getters (hasTarget, getTargetID, ...) read the first, primary camera.
+ */
 public class Vision extends SubsystemBase {
-  private NetworkTable table;
-  private NetworkTableEntry targetValid;
-  private NetworkTableEntry targetXOffset;
-  private NetworkTableEntry targetArea; // proxy for distance from target
-  private NetworkTableEntry targetID;
-  private NetworkTableEntry botpose;
-  
+  private static final int DRIVER_PIPELINE = 1;
+
+  private final LimelightCamera[] cameras = {
+    new LimelightCamera(Constants.LIMELIGHT_UPS_NAME,
+      new Transform3d(
+        new Translation3d(Constants.LIMELIGHT_UPS_X_METERS, Constants.LIMELIGHT_UPS_Y_METERS, Constants.LIMELIGHT_UPS_Z_METERS),
+        new Rotation3d(0, Math.toRadians(Constants.LIMELIGHT_UPS_PITCH_DEGREES), Math.toRadians(Constants.LIMELIGHT_UPS_YAW_DEGREES))),
+      Constants.LIMELIGHT_UPS_PIPELINE)
+  };
+  private final Frame[] frames = new Frame[LimelightCamera.MAX_FRAMES_PER_LOOP * cameras.length];
+  private int frameCount = 0;
+  private final int profilerId = LoopProfiler.register("Vision");
+
 
   public static enum CamMode {
     VISION,
@@ -38,70 +48,191 @@ public class Vision extends SubsystemBase {
     }
   }
 
-  public Vision() {
-    table = NetworkTableInstance.getDefault().getTable("limelight-ups");
-    targetValid = table.getEntry("tv");
-    targetID  = table.getEntry("tid");
-    targetXOffset = table.getEntry("tx");
-    targetArea = table.getEntry("ta");
-    if(DriverStation.getAlliance() == Alliance.Red) {
-      botpose = table.getEntry("botpose_wpired");
-    }else {
-      botpose = table.getEntry("botpose_wpiblue");
+  /**
+   * One botpose update from a camera. Frames are reused every loop, so copy anything you need
+   * to keep past the current loop.
+   */
+  public static final class Frame {
+    LimelightCamera camera;
+    double timestamp;
+    boolean hasTarget;
+    double x;
+    double y;
+    double rotationRadians;
+    int targetID;
+    double targetXOffsetDegrees;
+    double targetArea;
+    double pipelineLatencyMs;
+    double captureLatencyMs;
+    int tagCount;
+    double distanceMeters;
+    double xyStdDev;
+    double thetaStdDev;
+
+    public LimelightCamera getCamera() {
+      return camera;
+    }
+
+    /* FPGA time in seconds the image was captured at */
+    public double getTimestamp() {
+      return timestamp;
+    }
+
+    public boolean hasTarget() {
+      return hasTarget;
+    }
+
+    /* Botpose, relative to our alliance's origin */
+    public double getX() {
+      return x;
+    }
+
+    public double getY() {
+      return y;
+    }
+
+    public double getRotationRadians() {
+      return rotationRadians;
+    }
+
+    public int getTargetID() {
+      return targetID;
+    }
+
+    public double getTargetXOffsetDegrees() {
+      return targetXOffsetDegrees;
+    }
+
+    public double getTargetArea() {
+      return targetArea;
+    }
+
+    public double getPipelineLatencyMs() {
+      return pipelineLatencyMs;
+    }
+
+    public double getCaptureLatencyMs() {
+      return captureLatencyMs;
+    }
+
+    public int getTagCount() {
+      return tagCount;
     }
+
+    /* Camera to tag, meters */
+    public double getDistanceMeters() {
+      return distanceMeters;
+    }
+
+    /* How much to trust this pose, meters */
+    public double getXYStdDev() {
+      return xyStdDev;
+    }
+
+    /* Radians */
+    public double getThetaStdDev() {
+      return thetaStdDev;
+    }
+  }
+
+  public Vision() {}
+
+  public LimelightCamera[] getCameras() {
+    return cameras;
+  }
+
+  /* Number of camera frames that arrived since last loop, from every camera, each is only reported for one loop */
+  public int getFrameCount() {
+    return frameCount;
+  }
+
+  /* Oldest capture first */
+  public Frame getFrame(int index) {
+    return frames[index];
   }
 
   public Pose2d getBotpose() {
-    double[] arr = botpose.getDoubleArray(new double[6]);
-    return new Pose2d(arr[0], arr[1], Rotation2d.fromDegrees(arr[5]));
+    return cameras[0].getBotpose();
   }
 
   public int getTargetID() {
-    return (int) targetID.getInteger(0);
+    return cameras[0].getTargetID();
   }
 
   public double getTargetArea() {
-    return targetArea.getDouble(0);
+    return cameras[0].getTargetArea();
   }
 
   public double getTargetXOffsetDegrees() {
-    return targetXOffset.getDouble(0);
+    return cameras[0].getTargetXOffsetDegrees();
   }
 
   public boolean hasTarget() {
-    return targetValid.getDouble(0) == 1;
+    return cameras[0].hasTarget();
   }
 
   public void setMode(CamMode mode) {
-    if(mode == CamMode.VISION) {
-      table.getEntry("camMode").setNumber(0);
-    }else {
-      table.getEntry("camMode").setNumber(1);
+    for (LimelightCamera camera : cameras) {
+      if(mode == CamMode.VISION) {
+        camera.setCamMode(0);
+      }else {
+        camera.setCamMode(1);
+      }
     }
   }
-  
+
   public void setPipelineDriver(){
-    NetworkTableInstance.getDefault().getTable("limelight-ups").getEntry("pipeline").setNumber(1);
+    for (LimelightCamera camera : cameras) {
+      camera.setPipeline(DRIVER_PIPELINE);
+    }
   }
-  
+
   public void setPipelineVision(){
-    NetworkTableInstance.getDefault().getTable("limelight-ups").getEntry("pipeline").setNumber(0);
+    for (LimelightCamera camera : cameras) {
+      camera.setPipeline(camera.getPipeline());
+    }
   }
 
   public void setLEDMode(LEDMode ledmode) {
-    if(ledmode == LEDMode.PIPELINE){
-      table.getEntry("LEDMode").setNumber(0);
-    }
-    else if(ledmode == LEDMode.ON){
+    for (LimelightCamera camera : cameras) {
+      if(ledmode == LEDMode.PIPELINE){
+        camera.setLEDMode(0);
+      }
+      else if(ledmode == LEDMode.ON){
 
-      table.getEntry("LEDMode").setNumber(1); 
-    }
-    else if(ledmode == LEDMode.BLINK){
-      table.getEntry("LEDMode").setNumber(2); 
-    }
-    else{
-      table.getEntry("LEDMode").setNumber(3);
+        camera.setLEDMode(1);
+      }
+      else if(ledmode == LEDMode.BLINK){
+        camera.setLEDMode(2);
+      }
+      else{
+        camera.setLEDMode(3);
+      }
     }
 
   }
+
+  @Override
+  public void periodic() {
+    LoopProfiler.begin(profilerId);
+    readFrames();
+    LoopProfiler.end(profilerId);
+  }
+
+  /* Merges every camera's new frames, sorted by capture time so the estimator sees them in order */
+  private void readFrames() {
+    frameCount = 0;
+    for (LimelightCamera camera : cameras) {
+      camera.readFrames();
+      for (int i = 0; i < camera.getFrameCount(); i++) {
+        Frame frame = camera.getFrame(i);
+        int j = frameCount++;
+        while (j > 0 && frames[j - 1].timestamp > frame.timestamp) {
+          frames[j] = frames[j - 1];
+          j--;
+        }
+        frames[j] = frame;
+      }
+    }
+  }
 }
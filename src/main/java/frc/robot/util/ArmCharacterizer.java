@@ -0,0 +1,254 @@
+package frc.robot.util;
+
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Finds an arm's ArmFeedforward gains on the robot. Runs four tests on its own notifier: a slow
+ * voltage ramp each way (quasistatic, kS, kG and kV dominate) and a voltage step each way
+ * (dynamic, adds kA). Each test stops when the arm leaves the allowed travel or times out, and
+ * since they alternate direction the arm works its way back and forth across that range.
+ *
+ * <p>Every sample (voltage, angle, velocity, acceleration) is written to the WPILOG at the
+ * notifier rate for offline analysis, and fed into a least squares fit of
+ * V = kS sign(v) + kG cos(angle) + kV v + kA a, so the gains are ready as soon as it finishes.
+ */
+public class ArmCharacterizer {
+    private static final double PERIOD_SECONDS = 0.005;
+    private static final double TEST_TIMEOUT_SECONDS = 10;
+    // Below this the arm is in static friction and the model doesn't hold, rad/s
+    private static final double MIN_VELOCITY = 0.05;
+
+    private enum Test {
+        QUASISTATIC_FORWARD(1, false),
+        QUASISTATIC_REVERSE(-1, false),
+        DYNAMIC_FORWARD(1, true),
+        DYNAMIC_REVERSE(-1, true),
+        DONE(0, false);
+
+        final double direction;
+        final boolean dynamic;
+
+        Test(double direction, boolean dynamic) {
+            this.direction = direction;
+            this.dynamic = dynamic;
+        }
+    }
+
+    private final DoubleConsumer voltageOutput;
+    private final DoubleSupplier positionRotations;
+    private final DoubleSupplier angleRadians;
+    private final DoubleSupplier velocityRadiansPerSecond;
+    private final double minPosition;
+    private final double maxPosition;
+    private final double rampVoltsPerSecond;
+    private final double stepVolts;
+    private final Notifier notifier = new Notifier(this::sample);
+
+    private final DoubleLogEntry voltageLog;
+    private final DoubleLogEntry angleLog;
+    private final DoubleLogEntry velocityLog;
+    private final DoubleLogEntry accelerationLog;
+
+    // Least squares normal equations, regressors {sign(v), cos(angle), v, a}
+    private final double[][] normal = new double[4][4];
+    private final double[] moment = new double[4];
+    private final double[] regressors = new double[4];
+    private int fitSamples;
+
+    // Held by sample() and stop(), so a sample already running can't drive the arm after stop()
+    private final Object lock = new Object();
+
+    // Only touched by the notifier thread until done is set
+    private Test test;
+    private double testStart;
+    private double testStartPosition;
+    private double lastVelocity;
+    private double lastTime;
+    private volatile boolean done = false;
+    private double[] gains;
+
+    /**
+     * @param voltageOutput applies a voltage to the arm motor, called from the notifier thread
+     * @param positionRotations raw position, for the travel limits
+     * @param angleRadians angle from horizontal, positive in the direction positive voltage moves
+     * @param velocityRadiansPerSecond read straight from the encoder, not the loop's sensor snapshot
+     * @param minPosition lowest position in rotations a test may reach
+     * @param maxPosition highest position in rotations a test may reach
+     */
+    public ArmCharacterizer(String name, DoubleConsumer voltageOutput, DoubleSupplier positionRotations,
+            DoubleSupplier angleRadians, DoubleSupplier velocityRadiansPerSecond,
+            double minPosition, double maxPosition, double rampVoltsPerSecond, double stepVolts) {
+        this.voltageOutput = voltageOutput;
+        this.positionRotations = positionRotations;
+        this.angleRadians = angleRadians;
+        this.velocityRadiansPerSecond = velocityRadiansPerSecond;
+        this.minPosition = minPosition;
+        this.maxPosition = maxPosition;
+        this.rampVoltsPerSecond = rampVoltsPerSecond;
+        this.stepVolts = stepVolts;
+
+        DataLog log = DataLogManager.getLog();
+        String prefix = "/" + name + " Characterization/";
+        voltageLog = new DoubleLogEntry(log, prefix + "Voltage");
+        angleLog = new DoubleLogEntry(log, prefix + "Angle");
+        velocityLog = new DoubleLogEntry(log, prefix + "Velocity");
+        accelerationLog = new DoubleLogEntry(log, prefix + "Acceleration");
+        notifier.setName(name + " Characterization");
+    }
+
+    public void start() {
+        for (int r = 0; r < 4; r++) {
+            moment[r] = 0;
+            for (int c = 0; c < 4; c++) {
+                normal[r][c] = 0;
+            }
+        }
+        fitSamples = 0;
+        gains = null;
+        done = false;
+        startTest(Test.QUASISTATIC_FORWARD);
+        notifier.startPeriodic(PERIOD_SECONDS);
+    }
+
+    public void stop() {
+        notifier.stop();
+        synchronized (lock) {
+            test = Test.DONE;
+            done = true;
+            voltageOutput.accept(0);
+        }
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Fitted {kS, kG, kV, kA} in volts, radians and seconds, or null if there weren't enough
+     * moving samples to fit.
+     */
+    public double[] getGains() {
+        if (!done) {
+            return null;
+        }
+        if (gains == null && fitSamples >= 4) {
+            gains = solve(normal, moment);
+        }
+        return gains;
+    }
+
+    private void startTest(Test next) {
+        test = next;
+        testStart = Timer.getFPGATimestamp();
+        testStartPosition = positionRotations.getAsDouble();
+        lastTime = testStart;
+        lastVelocity = velocityRadiansPerSecond.getAsDouble();
+    }
+
+    private void sample() {
+        synchronized (lock) {
+            if (test != Test.DONE) {
+                sampleTest();
+            }
+        }
+    }
+
+    /* One notifier period of the current test, called with the lock held */
+    private void sampleTest() {
+        double now = Timer.getFPGATimestamp();
+        double elapsed = now - testStart;
+        double position = positionRotations.getAsDouble();
+        // Only the limit it is moving towards, the last test may have left it just past the other one
+        boolean outOfTravel = (position < minPosition && position < testStartPosition)
+                || (position > maxPosition && position > testStartPosition);
+        if (outOfTravel || elapsed > TEST_TIMEOUT_SECONDS) {
+            voltageOutput.accept(0);
+            Test next = Test.values()[test.ordinal() + 1];
+            if (next == Test.DONE) {
+                test = Test.DONE;
+                notifier.stop();
+                done = true;
+                return;
+            }
+            startTest(next);
+            return;
+        }
+
+        double volts = test.direction * (test.dynamic ? stepVolts : rampVoltsPerSecond * elapsed);
+        voltageOutput.accept(volts);
+
+        double angle = angleRadians.getAsDouble();
+        double velocity = velocityRadiansPerSecond.getAsDouble();
+        double dt = now - lastTime;
+        double acceleration = dt > 0 ? (velocity - lastVelocity) / dt : 0;
+        lastTime = now;
+        lastVelocity = velocity;
+
+        long timestamp = (long) (now * 1e6);
+        voltageLog.append(volts, timestamp);
+        angleLog.append(angle, timestamp);
+        velocityLog.append(velocity, timestamp);
+        accelerationLog.append(acceleration, timestamp);
+
+        if (Math.abs(velocity) < MIN_VELOCITY) {
+            return;
+        }
+        regressors[0] = Math.signum(velocity);
+        regressors[1] = Math.cos(angle);
+        regressors[2] = velocity;
+        // The quasistatic ramp barely accelerates, its finite difference is mostly noise
+        regressors[3] = test.dynamic ? acceleration : 0;
+        for (int r = 0; r < 4; r++) {
+            moment[r] += regressors[r] * volts;
+            for (int c = 0; c < 4; c++) {
+                normal[r][c] += regressors[r] * regressors[c];
+            }
+        }
+        fitSamples++;
+    }
+
+    /* Gaussian elimination with partial pivoting, null if the system is singular */
+    private static double[] solve(double[][] a, double[] b) {
+        int n = b.length;
+        double[][] m = new double[n][n + 1];
+        for (int r = 0; r < n; r++) {
+            System.arraycopy(a[r], 0, m[r], 0, n);
+            m[r][n] = b[r];
+        }
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int r = col + 1; r < n; r++) {
+                if (Math.abs(m[r][col]) > Math.abs(m[pivot][col])) {
+                    pivot = r;
+                }
+            }
+            if (Math.abs(m[pivot][col]) < 1e-9) {
+                return null;
+            }
+            double[] swap = m[col];
+            m[col] = m[pivot];
+            m[pivot] = swap;
+            for (int r = 0; r < n; r++) {
+                if (r == col) {
+                    continue;
+                }
+                double factor = m[r][col] / m[col][col];
+                for (int c = col; c <= n; c++) {
+                    m[r][c] -= factor * m[col][c];
+                }
+            }
+        }
+        double[] x = new double[n];
+        for (int r = 0; r < n; r++) {
+            x[r] = m[r][n] / m[r][r];
+        }
+        return x;
+    }
+}
@@ -1,21 +1,25 @@
 package frc.robot.util;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.pathplanner.lib.PathConstraints;
-import com.pathplanner.lib.PathPlanner;
 import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPlannerTrajectory.EventMarker;
 import com.pathplanner.lib.auto.PIDConstants;
 import com.pathplanner.lib.auto.SwerveAutoBuilder;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.Constants;
 import frc.robot.commands.groups.AutoBalance;
@@ -34,6 +38,7 @@ import frc.robot.subsystems.Intake;
 
 public class AutoGenerator {
     private SwerveAutoBuilder builder;
+    private PathTracker pathTracker;
 
     private HashMap<String, Command> eventMap = new HashMap<String, Command>();
     private HashMap<String, Command> startActionMap = new HashMap<String, Command>();
@@ -45,6 +50,19 @@ public class AutoGenerator {
 
     private ShuffleboardTab autoTab = Shuffleboard.getTab("Auto");
     private Field2d field = new Field2d();
+    private String fieldPath;
+
+    // Generated trajectories keyed by path name and constraints, null when the path file is missing
+    private HashMap<String, PathPlannerTrajectory> trajectoryCache = new HashMap<String, PathPlannerTrajectory>();
+
+    // Fully built autos keyed by path name and start action, null when the path file is missing
+    private HashMap<String, Command> autoCommandCache = new HashMap<String, Command>();
+    private int precompileIndex = 0;
+
+    // Set by select(), overrides the dashboard choosers
+    private StartLocation selectedLocation;
+    private PathActions selectedPathAction;
+    private StartActions selectedStartAction;
 
     public enum PathActions {
         SCORE_EXIT_BALANCE("ExitAndBalance"),
@@ -92,17 +110,18 @@ public class AutoGenerator {
         eventMap.put("extendFloorIntake", new ExtendFloorIntake(floorArmSubsystem));
         eventMap.put("retractFloorIntake", new RetractFloorIntake(floorArmSubsystem));
 
+        // Outputs chassis speeds straight to the drivetrain with pose feedback, see PathTracker for how well it follows
         builder = new SwerveAutoBuilder(
             drivetrainSubsystem::getPose,
-            drivetrainSubsystem::resetPose,
-            drivetrainSubsystem.getKinematics(),
-            new PIDConstants(0, 0, 0),
-            new PIDConstants(0, 0, 0),
-            drivetrainSubsystem::setSwerveStates,
+            drivetrainSubsystem::resetAutoStartPose,
+            new PIDConstants(Constants.AUTO_TRANSLATION_P_COEFF, Constants.AUTO_TRANSLATION_I_COEFF, Constants.AUTO_TRANSLATION_D_COEFF),
+            new PIDConstants(Constants.AUTO_ROTATION_P_COEFF, Constants.AUTO_ROTATION_I_COEFF, Constants.AUTO_ROTATION_D_COEFF),
+            drivetrainSubsystem::drive,
             eventMap,
             true,
             drivetrainSubsystem
         );
+        pathTracker = new PathTracker(drivetrainSubsystem);
 
         locationSelector.setDefaultOption("Area One", StartLocation.ONE); 
         locationSelector.addOption("Area Two", StartLocation.TWO);
@@ -123,29 +142,146 @@ public class AutoGenerator {
         autoTab.addString("Current Auto Path: ", () -> getSelectedPath()).withSize(2, 1).withPosition(0, 1);
         autoTab.addString("Current Starting Action: ", () -> getSelectedStartAction()).withSize(2, 1).withPosition(0, 2);
         autoTab.add("Current Auto Trajectory (Always appears on blue side)", field).withSize(6, 4).withPosition(2, 1);
+        preloadPaths();
+
         autoTab.addBoolean("Current Alliance", ()-> DriverStation.getAlliance() == Alliance.Blue).withSize(1, 1).withPosition(7, 0).withProperties(Map.of("color when true", "blue", "color when false", "red"));
     }
 
+    /* Loads and generates every selectable path up front so nothing is parsed after robotInit */
+    private void preloadPaths() {
+        for (PathActions action : PathActions.values()) {
+            for (StartLocation location : StartLocation.values()) {
+                getPath(action.value + location.value, defaulPathConstraints);
+            }
+        }
+    }
+
+    private PathPlannerTrajectory getPath(String name, PathConstraints constraints) {
+        String key = name + ":" + constraints.maxVelocity + ":" + constraints.maxAcceleration;
+        if (!trajectoryCache.containsKey(key)) {
+            trajectoryCache.put(key, CompiledPaths.load(name, constraints));
+        }
+        return trajectoryCache.get(key);
+    }
+
     public Pose2d getCurrentStartingPose() {
-        return PathPlanner.loadPath(getSelectedPath(), defaulPathConstraints).getInitialPose();
+        PathPlannerTrajectory path = getPath(getSelectedPath(), defaulPathConstraints);
+        if (path == null) {
+            return null;
+        }
+        return path.getInitialPose();
     }
 
     private String getSelectedPath() {
+        if (selectedPathAction != null) {
+            return selectedPathAction.value + selectedLocation.value;
+        }
         return pathActionSelector.getSelected().value + locationSelector.getSelected().value;
     }
 
+    private StartActions getSelectedStartActionOption() {
+        if (selectedStartAction != null) {
+            return selectedStartAction;
+        }
+        return startActionSelector.getSelected();
+    }
+
+    /* Picks the auto without the dashboard, for running autos in simulation */
+    public void select(StartLocation location, PathActions pathAction, StartActions startAction) {
+        selectedLocation = location;
+        selectedPathAction = pathAction;
+        selectedStartAction = startAction;
+    }
+
+    public boolean hasPath(StartLocation location, PathActions pathAction) {
+        return getPath(pathAction.value + location.value, defaulPathConstraints) != null;
+    }
+
+    /* Event names in the path that aren't in the event map, PathPlanner silently skips them */
+    public List<String> getUnboundEvents(StartLocation location, PathActions pathAction) {
+        List<String> unbound = new ArrayList<String>();
+        PathPlannerTrajectory path = getPath(pathAction.value + location.value, defaulPathConstraints);
+        if (path == null) {
+            return unbound;
+        }
+        List<String> names = new ArrayList<String>(path.getStartStopEvent().names);
+        names.addAll(path.getEndStopEvent().names);
+        for (EventMarker marker : path.getMarkers()) {
+            names.addAll(marker.names);
+        }
+        for (String name : names) {
+            if (!name.equals("startAction") && !eventMap.containsKey(name) && !unbound.contains(name)) {
+                unbound.add(name);
+            }
+        }
+        return unbound;
+    }
+
+    public PathTracker getPathTracker() {
+        return pathTracker;
+    }
+
+    /* Normally already built while disabled, so this is just a lookup */
     public Command getAutoCommand() {
-        return builder.fullAuto(PathPlanner.loadPath(getSelectedPath(), defaulPathConstraints));
+        double start = Timer.getFPGATimestamp();
+        Command command = getOrBuildAuto(getSelectedPath(), getSelectedStartActionOption());
+        SmartDashboard.putNumber("Auto Build ms/autonomousInit", (Timer.getFPGATimestamp() - start) * 1000);
+        if (command == null) {
+            DriverStation.reportError("No path file for " + getSelectedPath(), false);
+        }
+        return command;
+    }
+
+    private Command getOrBuildAuto(String pathName, StartActions startAction) {
+        String key = pathName + " " + startAction.value;
+        if (!autoCommandCache.containsKey(key)) {
+            Command command = null;
+            PathPlannerTrajectory path = getPath(pathName, defaulPathConstraints);
+            if (path != null) {
+                double start = Timer.getFPGATimestamp();
+                // Stop event commands are looked up when the auto is built
+                eventMap.put("startAction", startActionMap.get(startAction.value));
+                command = builder.fullAuto(path);
+                SmartDashboard.putNumber("Auto Build ms/" + key, (Timer.getFPGATimestamp() - start) * 1000);
+            }
+            autoCommandCache.put(key, command);
+        }
+        return autoCommandCache.get(key);
+    }
+
+    /*
+     * Called periodically while disabled. Makes sure the selected auto is built, then builds one
+     * more of the remaining combinations per call so a single loop never builds them all.
+     */
+    public void precompileAutos() {
+        getOrBuildAuto(getSelectedPath(), getSelectedStartActionOption());
+
+        PathActions[] actions = PathActions.values();
+        StartLocation[] locations = StartLocation.values();
+        StartActions[] startActions = StartActions.values();
+        if (precompileIndex < actions.length * locations.length * startActions.length) {
+            int i = precompileIndex++;
+            StartActions startAction = startActions[i % startActions.length];
+            i /= startActions.length;
+            StartLocation location = locations[i % locations.length];
+            i /= locations.length;
+            getOrBuildAuto(actions[i].value + location.value, startAction);
+        }
     }
 
     public String getSelectedStartAction() {
-        eventMap.put("startAction", startActionMap.get(startActionSelector.getSelected().value));
-        return startActionSelector.getSelected().value;
+        return getSelectedStartActionOption().value;
     }
 
-    /* Called periodically while disabled */
+    /* Called periodically while disabled, only touches the dashboard when the selection changes */
     public void updateSelectorPose() {
-        PathPlannerTrajectory path = PathPlanner.loadPath(getSelectedPath(), defaulPathConstraints);
+        String selectedPath = getSelectedPath();
+        if (selectedPath.equals(fieldPath)) {
+            return;
+        }
+        fieldPath = selectedPath;
+
+        PathPlannerTrajectory path = getPath(selectedPath, defaulPathConstraints);
         if(path != null) {
             field.setRobotPose(path.getInitialPose());
             field.getObject("traj").setTrajectory(path);   
@@ -0,0 +1,216 @@
+package frc.robot.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.pathplanner.lib.PathConstraints;
+import com.pathplanner.lib.PathPlanner;
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPlannerTrajectory.EventMarker;
+import com.pathplanner.lib.PathPlannerTrajectory.PathPlannerState;
+import com.pathplanner.lib.PathPlannerTrajectory.StopEvent;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.trajectory.Trajectory.State;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import frc.robot.Constants;
+
+/**
+ * PathPlanner paths generated ahead of time by the compilePaths Gradle task. Each .path file in
+ * deploy/pathplanner is generated on the desktop and written to deploy/pathplanner/compiled as a
+ * flat binary file, which the robot memory maps instead of parsing JSON and generating the
+ * trajectory on boot.
+ *
+ * <p>A compiled file is only used if it was made from the current .path file (CRC32 of its
+ * contents) with the same constraints, otherwise we fall back to PathPlanner.loadPath.
+ */
+public class CompiledPaths {
+    private static final int MAGIC = 0x50505452; // "PPTR"
+    private static final int VERSION = 1;
+    private static final String COMPILED_DIRECTORY = "compiled";
+    private static final String EXTENSION = ".traj";
+
+    /** Run by the compilePaths Gradle task, args[0] is the pathplanner deploy directory. */
+    public static void main(String[] args) throws IOException {
+        File pathDirectory = new File(args[0]);
+        File outputDirectory = new File(pathDirectory, COMPILED_DIRECTORY);
+        outputDirectory.mkdirs();
+        PathConstraints constraints = new PathConstraints(Constants.AUTO_MAX_VELOCITY, Constants.AUTO_MAX_ACCELERATION);
+
+        File[] paths = pathDirectory.listFiles((dir, fileName) -> fileName.endsWith(".path"));
+        if (paths == null) {
+            return;
+        }
+        for (File path : paths) {
+            String name = path.getName().substring(0, path.getName().length() - ".path".length());
+            PathPlannerTrajectory trajectory = PathPlanner.loadPath(name, constraints);
+            if (trajectory == null) {
+                throw new IOException("PathPlanner could not generate " + name);
+            }
+            write(new File(outputDirectory, name + EXTENSION), checksum(path), constraints, trajectory);
+            System.out.println("Compiled " + name + " (" + trajectory.getStates().size() + " states)");
+        }
+    }
+
+    /** Loads a compiled path, or generates it with PathPlanner if the compiled file is missing or stale. */
+    public static PathPlannerTrajectory load(String name, PathConstraints constraints) {
+        File pathDirectory = new File(Filesystem.getDeployDirectory(), "pathplanner");
+        File source = new File(pathDirectory, name + ".path");
+        File compiled = new File(new File(pathDirectory, COMPILED_DIRECTORY), name + EXTENSION);
+
+        if (source.exists() && compiled.exists()) {
+            try {
+                PathPlannerTrajectory trajectory = read(compiled, checksum(source), constraints);
+                if (trajectory != null) {
+                    return trajectory;
+                }
+                DriverStation.reportWarning("Compiled path " + name + " is stale, generating it instead", false);
+            } catch (IOException | RuntimeException e) {
+                DriverStation.reportWarning("Could not read compiled path " + name + ": " + e.getMessage(), false);
+            }
+        }
+        return PathPlanner.loadPath(name, constraints);
+    }
+
+    private static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(Files.readAllBytes(file.toPath()));
+        return crc.getValue();
+    }
+
+    private static void write(File file, long sourceChecksum, PathConstraints constraints, PathPlannerTrajectory trajectory) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceChecksum);
+            out.writeDouble(constraints.maxVelocity);
+            out.writeDouble(constraints.maxAcceleration);
+
+            List<State> states = trajectory.getStates();
+            out.writeInt(states.size());
+            for (State state : states) {
+                PathPlannerState pathState = (PathPlannerState) state;
+                out.writeDouble(pathState.timeSeconds);
+                out.writeDouble(pathState.poseMeters.getX());
+                out.writeDouble(pathState.poseMeters.getY());
+                out.writeDouble(pathState.poseMeters.getRotation().getRadians());
+                out.writeDouble(pathState.velocityMetersPerSecond);
+                out.writeDouble(pathState.accelerationMetersPerSecondSq);
+                out.writeDouble(pathState.curvatureRadPerMeter);
+                out.writeDouble(pathState.angularVelocityRadPerSec);
+                out.writeDouble(pathState.holonomicRotation.getRadians());
+                out.writeDouble(pathState.holonomicAngularVelocityRadPerSec);
+            }
+
+            writeStopEvent(out, trajectory.getStartStopEvent());
+            writeStopEvent(out, trajectory.getEndStopEvent());
+
+            List<EventMarker> markers = trajectory.getMarkers();
+            out.writeInt(markers.size());
+            for (EventMarker marker : markers) {
+                writeNames(out, marker.names);
+                out.writeDouble(marker.timeSeconds);
+                out.writeDouble(marker.positionMeters.getX());
+                out.writeDouble(marker.positionMeters.getY());
+            }
+        }
+    }
+
+    /* Returns null if the file was compiled from a different .path file or constraints */
+    private static PathPlannerTrajectory read(File file, long sourceChecksum, PathConstraints constraints) throws IOException {
+        MappedByteBuffer in;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+            return null;
+        }
+        if (in.getLong() != sourceChecksum
+                || in.getDouble() != constraints.maxVelocity
+                || in.getDouble() != constraints.maxAcceleration) {
+            return null;
+        }
+
+        int stateCount = in.getInt();
+        List<State> states = new ArrayList<State>(stateCount);
+        for (int i = 0; i < stateCount; i++) {
+            PathPlannerState state = new PathPlannerState();
+            state.timeSeconds = in.getDouble();
+            double x = in.getDouble();
+            double y = in.getDouble();
+            state.poseMeters = new Pose2d(x, y, new Rotation2d(in.getDouble()));
+            state.velocityMetersPerSecond = in.getDouble();
+            state.accelerationMetersPerSecondSq = in.getDouble();
+            state.curvatureRadPerMeter = in.getDouble();
+            state.angularVelocityRadPerSec = in.getDouble();
+            state.holonomicRotation = new Rotation2d(in.getDouble());
+            state.holonomicAngularVelocityRadPerSec = in.getDouble();
+            states.add(state);
+        }
+
+        StopEvent startStopEvent = readStopEvent(in);
+        StopEvent endStopEvent = readStopEvent(in);
+
+        int markerCount = in.getInt();
+        List<EventMarker> markers = new ArrayList<EventMarker>(markerCount);
+        for (int i = 0; i < markerCount; i++) {
+            EventMarker marker = new EventMarker(readNames(in), 0);
+            marker.timeSeconds = in.getDouble();
+            double x = in.getDouble();
+            marker.positionMeters = new Translation2d(x, in.getDouble());
+            markers.add(marker);
+        }
+
+        return new PathPlannerTrajectory(states, markers, startStopEvent, endStopEvent, true);
+    }
+
+    private static void writeStopEvent(DataOutputStream out, StopEvent event) throws IOException {
+        writeNames(out, event.names);
+        out.writeInt(event.executionBehavior.ordinal());
+        out.writeInt(event.waitBehavior.ordinal());
+        out.writeDouble(event.waitTime);
+    }
+
+    private static StopEvent readStopEvent(ByteBuffer in) {
+        List<String> names = readNames(in);
+        StopEvent.ExecutionBehavior executionBehavior = StopEvent.ExecutionBehavior.values()[in.getInt()];
+        StopEvent.WaitBehavior waitBehavior = StopEvent.WaitBehavior.values()[in.getInt()];
+        return new StopEvent(names, executionBehavior, waitBehavior, in.getDouble());
+    }
+
+    private static void writeNames(DataOutputStream out, List<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static List<String> readNames(ByteBuffer in) {
+        int count = in.getInt();
+        List<String> names = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            names.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,138 @@
+package frc.robot.util;
+
+/**
+ * Primitive double version of SwerveDriveKinematics. Produces the same module speeds and
+ * angles as the WPILib class, but writes them into arrays owned by the caller so the
+ * drivetrain loop does not create new objects every cycle.
+ */
+public class FastSwerveKinematics {
+    private final int numModules;
+    private final double[] moduleX;
+    private final double[] moduleY;
+    private final double[] moduleHeadings;
+
+    // Rows of the pseudo inverse of the inverse kinematics matrix, used for forward kinematics
+    private final double[] forwardVx;
+    private final double[] forwardVy;
+    private final double[] forwardOmega;
+
+    /**
+     * @param moduleX x position of each module relative to robot center, meters
+     * @param moduleY y position of each module relative to robot center, meters
+     */
+    public FastSwerveKinematics(double[] moduleX, double[] moduleY) {
+        if (moduleX.length != moduleY.length || moduleX.length < 2) {
+            throw new IllegalArgumentException("A swerve drive requires at least two modules");
+        }
+        numModules = moduleX.length;
+        this.moduleX = moduleX.clone();
+        this.moduleY = moduleY.clone();
+        moduleHeadings = new double[numModules];
+
+        // A^T A for the inverse kinematics matrix, rows [1, 0, -y] and [0, 1, x] per module
+        double sumX = 0;
+        double sumY = 0;
+        double sumSquares = 0;
+        for (int i = 0; i < numModules; i++) {
+            sumX += moduleX[i];
+            sumY += moduleY[i];
+            sumSquares += moduleX[i] * moduleX[i] + moduleY[i] * moduleY[i];
+        }
+        double[][] inverse = invert3x3(new double[][] {
+            {numModules, 0, -sumY},
+            {0, numModules, sumX},
+            {-sumY, sumX, sumSquares}
+        });
+
+        forwardVx = new double[numModules * 2];
+        forwardVy = new double[numModules * 2];
+        forwardOmega = new double[numModules * 2];
+        double[][] rows = {forwardVx, forwardVy, forwardOmega};
+        for (int r = 0; r < 3; r++) {
+            for (int i = 0; i < numModules; i++) {
+                rows[r][2 * i] = inverse[r][0] - inverse[r][2] * moduleY[i];
+                rows[r][2 * i + 1] = inverse[r][1] + inverse[r][2] * moduleX[i];
+            }
+        }
+    }
+
+    public int getNumModules() {
+        return numModules;
+    }
+
+    /**
+     * Converts chassis speeds into module speeds and angles. Like WPILib, a zero chassis speed
+     * leaves the modules at their last heading instead of snapping them back to zero.
+     */
+    public void toModuleStates(double vx, double vy, double omega, double[] speedsOut, double[] anglesOut) {
+        if (vx == 0 && vy == 0 && omega == 0) {
+            for (int i = 0; i < numModules; i++) {
+                speedsOut[i] = 0;
+                anglesOut[i] = moduleHeadings[i];
+            }
+            return;
+        }
+
+        for (int i = 0; i < numModules; i++) {
+            double moduleVx = vx - omega * moduleY[i];
+            double moduleVy = vy + omega * moduleX[i];
+            double speed = Math.hypot(moduleVx, moduleVy);
+            double angle = speed > 1e-6 ? Math.atan2(moduleVy, moduleVx) : 0;
+
+            speedsOut[i] = speed;
+            anglesOut[i] = angle;
+            moduleHeadings[i] = angle;
+        }
+    }
+
+    /** Scales every module speed down evenly so none of them is faster than maxSpeed. */
+    public static void desaturateWheelSpeeds(double[] speeds, double maxSpeed) {
+        double realMaxSpeed = 0;
+        for (double speed : speeds) {
+            realMaxSpeed = Math.max(realMaxSpeed, Math.abs(speed));
+        }
+        if (realMaxSpeed > maxSpeed) {
+            for (int i = 0; i < speeds.length; i++) {
+                speeds[i] = speeds[i] / realMaxSpeed * maxSpeed;
+            }
+        }
+    }
+
+    /**
+     * Least squares solution for the chassis motion given a value and angle for each module.
+     * Pass speeds to get chassis speeds, or distance deltas to get a twist.
+     *
+     * @param out {vx, vy, omega}
+     */
+    public void toChassisSpeeds(double[] values, double[] anglesRadians, double[] out) {
+        double vx = 0;
+        double vy = 0;
+        double omega = 0;
+        for (int i = 0; i < numModules; i++) {
+            double moduleVx = values[i] * Math.cos(anglesRadians[i]);
+            double moduleVy = values[i] * Math.sin(anglesRadians[i]);
+            vx += forwardVx[2 * i] * moduleVx + forwardVx[2 * i + 1] * moduleVy;
+            vy += forwardVy[2 * i] * moduleVx + forwardVy[2 * i + 1] * moduleVy;
+            omega += forwardOmega[2 * i] * moduleVx + forwardOmega[2 * i + 1] * moduleVy;
+        }
+        out[0] = vx;
+        out[1] = vy;
+        out[2] = omega;
+    }
+
+    private static double[][] invert3x3(double[][] m) {
+        double a = m[0][0], b = m[0][1], c = m[0][2];
+        double d = m[1][0], e = m[1][1], f = m[1][2];
+        double g = m[2][0], h = m[2][1], k = m[2][2];
+
+        double det = a * (e * k - f * h) - b * (d * k - f * g) + c * (d * h - e * g);
+        if (Math.abs(det) < 1e-12) {
+            throw new IllegalArgumentException("Module layout is degenerate");
+        }
+        return new double[][] {
+            {(e * k - f * h) / det, (c * h - b * k) / det, (b * f - c * e) / det},
+            {(f * g - d * k) / det, (a * k - c * g) / det, (c * d - a * f) / det},
+            {(d * h - e * g) / det, (b * g - a * h) / det, (a * e - b * d) / det}
+        };
+    }
+}
@@ -0,0 +1,88 @@
+package frc.robot.util;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Primitive double version of SwerveDriveOdometry. Uses the same twist/exp update as WPILib
+ * but keeps the pose as three doubles instead of building new geometry objects each update.
+ */
+public class FastSwerveOdometry {
+    private final FastSwerveKinematics kinematics;
+    private final double[] previousDistances;
+    private final double[] distanceDeltas;
+    private final double[] twist = new double[3];
+
+    private double x;
+    private double y;
+    private double theta;
+    private double gyroOffset;
+    private double previousAngle;
+
+    public FastSwerveOdometry(FastSwerveKinematics kinematics, double gyroAngleRadians, double[] distances) {
+        this.kinematics = kinematics;
+        previousDistances = new double[kinematics.getNumModules()];
+        distanceDeltas = new double[kinematics.getNumModules()];
+        resetPosition(gyroAngleRadians, distances, 0, 0, 0);
+    }
+
+    public void resetPosition(double gyroAngleRadians, double[] distances, double x, double y, double theta) {
+        this.x = x;
+        this.y = y;
+        this.theta = MathUtil.angleModulus(theta);
+        gyroOffset = theta - gyroAngleRadians;
+        previousAngle = this.theta;
+        System.arraycopy(distances, 0, previousDistances, 0, previousDistances.length);
+    }
+
+    /**
+     * @param gyroAngleRadians raw gyro angle
+     * @param distances distance driven by each module, meters
+     * @param anglesRadians current angle of each module
+     */
+    public void update(double gyroAngleRadians, double[] distances, double[] anglesRadians) {
+        double angle = MathUtil.angleModulus(gyroAngleRadians + gyroOffset);
+
+        for (int i = 0; i < distanceDeltas.length; i++) {
+            distanceDeltas[i] = distances[i] - previousDistances[i];
+            previousDistances[i] = distances[i];
+        }
+        kinematics.toChassisSpeeds(distanceDeltas, anglesRadians, twist);
+        double dx = twist[0];
+        double dy = twist[1];
+        double dtheta = MathUtil.angleModulus(angle - previousAngle);
+
+        // Pose exponential, same as Pose2d.exp
+        double sinTheta = Math.sin(dtheta);
+        double cosTheta = Math.cos(dtheta);
+        double s;
+        double c;
+        if (Math.abs(dtheta) < 1e-9) {
+            s = 1.0 - 1.0 / 6.0 * dtheta * dtheta;
+            c = 0.5 * dtheta;
+        } else {
+            s = sinTheta / dtheta;
+            c = (1 - cosTheta) / dtheta;
+        }
+        double localX = dx * s - dy * c;
+        double localY = dx * c + dy * s;
+
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        x += localX * cos - localY * sin;
+        y += localX * sin + localY * cos;
+        theta = angle;
+        previousAngle = angle;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getTheta() {
+        return theta;
+    }
+}
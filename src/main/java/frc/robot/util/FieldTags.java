@@ -0,0 +1,79 @@
+package frc.robot.util;
+
+import java.io.IOException;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.apriltag.AprilTagFields;
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * 2023 AprilTag locations from WPILib's field layout, in blue alliance coordinates, flattened into
+ * arrays indexed by tag ID so vision code can look them up without allocating.
+ */
+public final class FieldTags {
+    private static final int MAX_ID = 16;
+
+    private static final boolean[] present = new boolean[MAX_ID + 1];
+    private static final double[] x = new double[MAX_ID + 1];
+    private static final double[] y = new double[MAX_ID + 1];
+    private static final double[] z = new double[MAX_ID + 1];
+    private static final double[] yaw = new double[MAX_ID + 1];
+    private static double fieldLength = 16.54;
+    private static double fieldWidth = 8.02;
+
+    static {
+        try {
+            AprilTagFieldLayout layout = AprilTagFields.k2023ChargedUp.loadAprilTagFieldLayout();
+            fieldLength = layout.getFieldLength();
+            fieldWidth = layout.getFieldWidth();
+            for (AprilTag tag : layout.getTags()) {
+                if (tag.ID < 0 || tag.ID > MAX_ID) {
+                    continue;
+                }
+                present[tag.ID] = true;
+                x[tag.ID] = tag.pose.getX();
+                y[tag.ID] = tag.pose.getY();
+                z[tag.ID] = tag.pose.getZ();
+                yaw[tag.ID] = tag.pose.getRotation().getZ();
+            }
+        } catch (IOException e) {
+            DriverStation.reportError("Could not load the AprilTag field layout: " + e.getMessage(), false);
+        }
+    }
+
+    private FieldTags() {}
+
+    public static boolean has(int id) {
+        return id >= 0 && id <= MAX_ID && present[id];
+    }
+
+    public static int getMaxID() {
+        return MAX_ID;
+    }
+
+    public static double getX(int id) {
+        return x[id];
+    }
+
+    public static double getY(int id) {
+        return y[id];
+    }
+
+    public static double getZ(int id) {
+        return z[id];
+    }
+
+    /* Direction the tag faces, radians */
+    public static double getYaw(int id) {
+        return yaw[id];
+    }
+
+    public static double getFieldLength() {
+        return fieldLength;
+    }
+
+    public static double getFieldWidth() {
+        return fieldWidth;
+    }
+}
@@ -0,0 +1,102 @@
+package frc.robot.util;
+
+import edu.wpi.first.math.filter.Debouncer;
+import edu.wpi.first.math.filter.LinearFilter;
+import frc.robot.Constants;
+
+/**
+ * Tells from a roller motor's current and speed whether it is holding a game piece. A piece
+ * pressed into the rollers stalls them: current goes up and speed falls well below what the
+ * output would give spinning free. Once the rollers spin free again at low current the piece is
+ * gone. Both are filtered and have to last a debounce time, and the inrush after the motor starts
+ * or reverses is ignored. With the motor stopped there is nothing to measure, so the last answer
+ * stands. That is why the intakes hold a piece with a little power instead of stopping.
+ *
+ * <p>sample() is called from the intake's own notifier, faster than the robot loop, and is the
+ * only writer apart from released(). hasPiece() can be read from any thread. If a piece is still
+ * stuck while ejecting, the stall marks it held again.
+ */
+public class GamePieceDetector {
+    // Below this output the rollers aren't being driven
+    private static final double MIN_OUTPUT = 0.02;
+    private static final double NEO_FREE_SPEED_RPM = 5676;
+
+    private final double acquireCurrent;
+    private final double lostCurrent;
+    private final LinearFilter currentFilter;
+    private final LinearFilter velocityFilter;
+    private final Debouncer acquireDebouncer = new Debouncer(Constants.GAME_PIECE_ACQUIRE_DEBOUNCE_SECONDS);
+    private final Debouncer lostDebouncer = new Debouncer(Constants.GAME_PIECE_LOST_DEBOUNCE_SECONDS);
+
+    private double lastOutput = 0;
+    private double spinUpStart;
+    private volatile double filteredCurrent;
+    private volatile double speedRatio;
+    private volatile boolean hasPiece = false;
+
+    /**
+     * @param acquireCurrent amps above which a stalled roller means a piece
+     * @param lostCurrent amps below which a free spinning roller means no piece
+     */
+    public GamePieceDetector(double acquireCurrent, double lostCurrent) {
+        this.acquireCurrent = acquireCurrent;
+        this.lostCurrent = lostCurrent;
+        currentFilter = LinearFilter.singlePoleIIR(Constants.GAME_PIECE_FILTER_TIME_CONSTANT_SECONDS,
+            Constants.GAME_PIECE_SAMPLE_PERIOD_SECONDS);
+        velocityFilter = LinearFilter.singlePoleIIR(Constants.GAME_PIECE_FILTER_TIME_CONSTANT_SECONDS,
+            Constants.GAME_PIECE_SAMPLE_PERIOD_SECONDS);
+    }
+
+    /**
+     * @param current motor output current, amps
+     * @param velocity motor speed, RPM
+     * @param output duty cycle the motor was last set to
+     * @param now FPGA time in seconds
+     */
+    public void sample(double current, double velocity, double output, double now) {
+        double amps = currentFilter.calculate(current);
+        double rpm = velocityFilter.calculate(Math.abs(velocity));
+        filteredCurrent = amps;
+
+        boolean running = Math.abs(output) >= MIN_OUTPUT;
+        boolean wasRunning = Math.abs(lastOutput) >= MIN_OUTPUT;
+        if (running && (!wasRunning || Math.signum(output) != Math.signum(lastOutput))) {
+            spinUpStart = now;
+        }
+        lastOutput = output;
+        if (!running || now - spinUpStart < Constants.GAME_PIECE_SPIN_UP_SECONDS) {
+            acquireDebouncer.calculate(false);
+            lostDebouncer.calculate(false);
+            return;
+        }
+
+        double ratio = rpm / (Math.abs(output) * NEO_FREE_SPEED_RPM);
+        speedRatio = ratio;
+        boolean stalled = amps > acquireCurrent && ratio < Constants.GAME_PIECE_STALL_SPEED_RATIO;
+        boolean empty = amps < lostCurrent && ratio > Constants.GAME_PIECE_FREE_SPEED_RATIO;
+        if (acquireDebouncer.calculate(stalled)) {
+            hasPiece = true;
+        }
+        if (lostDebouncer.calculate(empty)) {
+            hasPiece = false;
+        }
+    }
+
+    public boolean hasPiece() {
+        return hasPiece;
+    }
+
+    /* Called when the rollers start ejecting, a short drop may not run long enough to see it go */
+    public void released() {
+        hasPiece = false;
+    }
+
+    public double getFilteredCurrent() {
+        return filteredCurrent;
+    }
+
+    /* Speed as a fraction of free speed at the current output, as of the last driven sample */
+    public double getSpeedRatio() {
+        return speedRatio;
+    }
+}
@@ -0,0 +1,174 @@
+package frc.robot.util;
+
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Measures how long a driver's stick input takes to reach the motors. Each stage of the drive path
+ * stamps the FPGA clock: the HID read in RobotContainer's suppliers, the end of input shaping in
+ * DefaultDriveCommand, DrivetrainSubsystem.drive(), kinematics in the next periodic() (subsystems
+ * run before commands, so that is a loop later) and the module set calls. Separately, a step on a
+ * stick is timed until the drive encoders first see the module velocity change.
+ *
+ * <p>Histograms are kept per drive input mode (sprint, precision) and published as
+ * {p50, p99, max, samples} in ms to the Input Latency table. Main thread only, nothing is allocated
+ * after class load.
+ */
+public final class InputLatency {
+    public static final int SPRINT = 0;
+    public static final int PRECISION = 1;
+    private static final String[] MODE_NAMES = { "Sprint", "Precision" };
+
+    public static final int HID_READ = 0;
+    public static final int SHAPED = 1;
+    public static final int DRIVE = 2;
+    public static final int KINEMATICS = 3;
+    public static final int MODULE_SET = 4;
+    private static final int STAGES = 5;
+
+    // Each stage from the one before it, then the totals
+    private static final String[] METRIC_NAMES = {
+        "HID To Shaped", "Shaped To Drive", "Drive To Kinematics", "Kinematics To Set", "HID To Set", "Stick To Motion"
+    };
+    private static final int HID_TO_SET = 4;
+    private static final int STICK_TO_MOTION = 5;
+    private static final double[] BUCKET_MS = { 0.01, 0.01, 0.1, 0.01, 0.1, 5 };
+    private static final int BUCKETS = 500;
+
+    private static final double STEP_THRESHOLD = 0.5; // stick units in one loop
+    private static final double MOTION_THRESHOLD = 0.05; // m/s change in average module speed
+    private static final long MOTION_TIMEOUT_MICROS = 1_000_000;
+    private static final int PUBLISH_PERIOD_LOOPS = 50;
+
+    private static final long[][][] histograms = new long[MODE_NAMES.length][METRIC_NAMES.length][BUCKETS];
+    private static final long[][] samples = new long[MODE_NAMES.length][METRIC_NAMES.length];
+    private static final double[][] maxMs = new double[MODE_NAMES.length][METRIC_NAMES.length];
+    private static final DoubleArrayPublisher[][] publishers = new DoubleArrayPublisher[MODE_NAMES.length][METRIC_NAMES.length];
+    private static final double[] publishScratch = new double[4];
+
+    private static final long[] stamps = new long[STAGES];
+    private static int nextStage = HID_READ;
+    private static int mode = SPRINT;
+    private static int loopsSincePublish = 0;
+
+    private static final double[] lastStick = new double[3];
+    private static boolean waitingForMotion = false;
+    private static long stepTime;
+    private static int stepMode;
+    private static double stepBaselineSpeed;
+    private static double moduleSpeed;
+
+    static {
+        NetworkTable table = NetworkTableInstance.getDefault().getTable("Input Latency");
+        for (int m = 0; m < MODE_NAMES.length; m++) {
+            for (int i = 0; i < METRIC_NAMES.length; i++) {
+                publishers[m][i] = table.getDoubleArrayTopic(MODE_NAMES[m] + "/" + METRIC_NAMES[i]).publish();
+            }
+        }
+    }
+
+    private InputLatency() {}
+
+    /** Wraps a driver stick read, axis 0-2. Returns value so it can sit inside a supplier. */
+    public static double stickRead(int axis, double value) {
+        long now = RobotController.getFPGATime();
+        // The first axis read in a loop starts a new sample, an unfinished one is dropped
+        if (nextStage != SHAPED) {
+            stamps[HID_READ] = now;
+            nextStage = SHAPED;
+        }
+
+        if (!waitingForMotion && Math.abs(value - lastStick[axis]) > STEP_THRESHOLD) {
+            waitingForMotion = true;
+            stepTime = now;
+            stepMode = mode;
+            stepBaselineSpeed = moduleSpeed;
+        }
+        lastStick[axis] = value;
+        return value;
+    }
+
+    /** Called by the drive command after shaping, with the input mode it used. */
+    public static void shaped(int inputMode) {
+        mode = inputMode;
+        stamp(SHAPED);
+    }
+
+    public static void stamp(int stage) {
+        if (stage == nextStage) {
+            stamps[stage] = RobotController.getFPGATime();
+            nextStage = stage + 1;
+        }
+    }
+
+    /** Called after the module set calls every drivetrain periodic, finishes the sample. */
+    public static void modulesSet() {
+        stamp(MODULE_SET);
+        if (nextStage == STAGES) {
+            for (int i = SHAPED; i < STAGES; i++) {
+                record(mode, i - 1, stamps[i] - stamps[i - 1]);
+            }
+            record(mode, HID_TO_SET, stamps[MODULE_SET] - stamps[HID_READ]);
+            nextStage = HID_READ;
+        }
+
+        if (++loopsSincePublish >= PUBLISH_PERIOD_LOOPS) {
+            loopsSincePublish = 0;
+            publish();
+        }
+    }
+
+    /** Average absolute module speed from the encoders, called when the drivetrain reads its sensors. */
+    public static void moduleSpeedMeasured(double speed) {
+        moduleSpeed = speed;
+        if (!waitingForMotion) {
+            return;
+        }
+        long elapsed = RobotController.getFPGATime() - stepTime;
+        if (Math.abs(speed - stepBaselineSpeed) > MOTION_THRESHOLD) {
+            record(stepMode, STICK_TO_MOTION, elapsed);
+            waitingForMotion = false;
+        } else if (elapsed > MOTION_TIMEOUT_MICROS) {
+            // Disabled, or the step was inside the deadband
+            waitingForMotion = false;
+        }
+    }
+
+    private static void record(int mode, int metric, long micros) {
+        double ms = micros / 1000.0;
+        int bucket = Math.min((int) (ms / BUCKET_MS[metric]), BUCKETS - 1);
+        histograms[mode][metric][bucket]++;
+        samples[mode][metric]++;
+        maxMs[mode][metric] = Math.max(maxMs[mode][metric], ms);
+    }
+
+    private static void publish() {
+        for (int m = 0; m < MODE_NAMES.length; m++) {
+            for (int i = 0; i < METRIC_NAMES.length; i++) {
+                if (samples[m][i] == 0) {
+                    continue;
+                }
+                publishScratch[0] = percentile(m, i, 0.50);
+                publishScratch[1] = percentile(m, i, 0.99);
+                publishScratch[2] = maxMs[m][i];
+                publishScratch[3] = samples[m][i];
+                publishers[m][i].set(publishScratch);
+            }
+        }
+    }
+
+    /* Upper edge of the bucket the percentile falls in, ms */
+    private static double percentile(int mode, int metric, double percentile) {
+        long target = (long) Math.ceil(samples[mode][metric] * percentile);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += histograms[mode][metric][bucket];
+            if (seen >= target) {
+                return (bucket + 1) * BUCKET_MS[metric];
+            }
+        }
+        return maxMs[mode][metric];
+    }
+}
@@ -0,0 +1,224 @@
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * A chain of stages that shape one driver axis, called once a loop. Every stage is O(1) and
+ * keeps its state in fields, so calculate() never allocates. When the stick is released the
+ * output settles to exactly zero, so the drivetrain's rotation and translation targets, which
+ * only run when nothing is commanded, can take over.
+ *
+ * <p>Also measures the chain's latency: when the input steps, how long the output takes to get
+ * halfway to where the stateless stages (deadband, expo, scale) alone would put it. That is the
+ * delay the filtering stages add on top of the loop itself.
+ */
+public class InputShaper {
+    private static final double PERIOD = TimedRobot.kDefaultPeriod;
+    // Input changes smaller than this aren't counted as a step for the latency measurement
+    private static final double STEP_THRESHOLD = 0.2;
+    private static final double LATENCY_AVERAGING = 0.3;
+    // Filters only approach zero, snap once the stick is released and the output is this close
+    private static final double ZERO_SNAP = 1e-3;
+
+    private final Stage[] stages;
+    private double output;
+    private double target;
+
+    private boolean measuring = false;
+    private double stepStartTime;
+    private double stepStartOutput;
+    private double stepTarget;
+    private double latencySeconds = 0;
+
+    public interface Stage {
+        double calculate(double value);
+
+        /* Starts the stage's state at value, as if it had been there forever */
+        default void reset(double value) {}
+
+        /* Stateless stages are the "ideal" response latency is measured against */
+        default boolean hasState() {
+            return false;
+        }
+    }
+
+    public InputShaper(Stage... stages) {
+        this.stages = stages.clone();
+    }
+
+    public double calculate(double input) {
+        double value = input;
+        double ideal = input;
+        for (Stage stage : stages) {
+            value = stage.calculate(value);
+            if (!stage.hasState()) {
+                ideal = stage.calculate(ideal);
+            }
+        }
+        if (ideal == 0 && value != 0 && Math.abs(value) < ZERO_SNAP) {
+            reset(0);
+            value = 0;
+        }
+        output = value;
+        measureLatency(ideal);
+        return output;
+    }
+
+    private void measureLatency(double ideal) {
+        double now = Timer.getFPGATimestamp();
+        if (Math.abs(ideal - target) > STEP_THRESHOLD) {
+            measuring = true;
+            stepStartTime = now - PERIOD; // the input changed sometime during the last loop
+            stepStartOutput = target;
+            stepTarget = ideal;
+        }
+        target = ideal;
+
+        if (measuring && Math.abs(output - stepStartOutput) >= Math.abs(stepTarget - stepStartOutput) / 2.0) {
+            measuring = false;
+            latencySeconds += LATENCY_AVERAGING * ((now - stepStartTime) - latencySeconds);
+        }
+    }
+
+    public void reset(double value) {
+        for (Stage stage : stages) {
+            stage.reset(value);
+            value = stage.calculate(value);
+        }
+        output = value;
+        target = value;
+        measuring = false;
+    }
+
+    public double getOutput() {
+        return output;
+    }
+
+    /* Averaged over recent input steps, seconds */
+    public double getLatencySeconds() {
+        return latencySeconds;
+    }
+
+    /* Values within deadband of zero are zero, the rest are stretched back out to [-1, 1] */
+    public static Stage deadband(double deadband) {
+        return value -> {
+            if (Math.abs(value) <= deadband) {
+                return 0.0;
+            }
+            return Math.copySign((Math.abs(value) - deadband) / (1.0 - deadband), value);
+        };
+    }
+
+    /* |value|^exponent keeping the sign, more resolution near the center of the stick */
+    public static Stage expo(double exponent) {
+        return value -> Math.copySign(Math.pow(Math.abs(value), exponent), value);
+    }
+
+    public static Stage scale(double factor) {
+        return value -> value * factor;
+    }
+
+    /* Limits how fast the value can change, units per second */
+    public static Stage slewRate(double rate) {
+        return new SlewRate(rate);
+    }
+
+    /* Exponential smoothing, reaches 63% of a step in timeConstant seconds */
+    public static Stage onePole(double timeConstant) {
+        return new OnePole(timeConstant);
+    }
+
+    /* Average of the last samples values, kept as a running sum */
+    public static Stage movingAverage(int samples) {
+        return new MovingAverage(samples);
+    }
+
+    private static final class SlewRate implements Stage {
+        private final double maxStep;
+        private double value;
+
+        SlewRate(double rate) {
+            maxStep = rate * PERIOD;
+        }
+
+        @Override
+        public double calculate(double input) {
+            value += Math.max(-maxStep, Math.min(maxStep, input - value));
+            return value;
+        }
+
+        @Override
+        public void reset(double input) {
+            value = input;
+        }
+
+        @Override
+        public boolean hasState() {
+            return true;
+        }
+    }
+
+    private static final class OnePole implements Stage {
+        private final double gain;
+        private double value;
+
+        OnePole(double timeConstant) {
+            gain = 1.0 - Math.exp(-PERIOD / timeConstant);
+        }
+
+        @Override
+        public double calculate(double input) {
+            value += gain * (input - value);
+            return value;
+        }
+
+        @Override
+        public void reset(double input) {
+            value = input;
+        }
+
+        @Override
+        public boolean hasState() {
+            return true;
+        }
+    }
+
+    private static final class MovingAverage implements Stage {
+        private final double[] samples;
+        private int index = 0;
+        private double sum = 0;
+
+        MovingAverage(int size) {
+            samples = new double[size];
+        }
+
+        @Override
+        public double calculate(double input) {
+            sum += input - samples[index];
+            samples[index] = input;
+            index = (index + 1) % samples.length;
+            if (index == 0) {
+                // Re-sum once per lap so rounding error in the running sum can't build up
+                sum = 0;
+                for (double sample : samples) {
+                    sum += sample;
+                }
+            }
+            return sum / samples.length;
+        }
+
+        @Override
+        public void reset(double input) {
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = input;
+            }
+            sum = input * samples.length;
+        }
+
+        @Override
+        public boolean hasState() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package frc.robot.util;
+
+import java.util.HashMap;
+
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj2.command.Command;
+
+/**
+ * Always on loop profiler. Times every part of a robot loop (mode periodic, sensor reads, each
+ * subsystem periodic, button polling, each command's execute and dashboard publishing) into fixed
+ * bucket histograms, publishes {p50, p99, max, overruns} in ms to the Profiler table once a second
+ * and logs which part took the longest whenever a loop overruns.
+ *
+ * <p>Main thread only. Components are registered once and then referred to by id so timing a
+ * loop doesn't allocate.
+ */
+public final class LoopProfiler {
+    private static final int MAX_COMPONENTS = 64;
+    private static final int BUCKETS = 400;
+    private static final double BUCKET_MS = 0.05; // 0 - 20ms, the last bucket holds everything longer
+    private static final double LOOP_PERIOD_MS = 20;
+    private static final int PUBLISH_PERIOD_LOOPS = 50;
+
+    private static final NetworkTable table = NetworkTableInstance.getDefault().getTable("Profiler");
+    private static final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+    private static final String[] names = new String[MAX_COMPONENTS];
+    private static final DoubleArrayPublisher[] publishers = new DoubleArrayPublisher[MAX_COMPONENTS];
+    private static final long[][] histograms = new long[MAX_COMPONENTS][BUCKETS];
+    private static final long[] samples = new long[MAX_COMPONENTS];
+    private static final double[] maxMs = new double[MAX_COMPONENTS];
+    private static final int[] overruns = new int[MAX_COMPONENTS];
+    private static final long[] cycleNanos = new long[MAX_COMPONENTS];
+    private static final long[] startNanos = new long[MAX_COMPONENTS];
+    private static final double[] publishScratch = new double[4];
+    private static int componentCount = 0;
+
+    private static long loopStart;
+    private static long lastMark;
+    private static int loopsSincePublish = 0;
+
+    public static final int LOOP = register("Loop");
+    public static final int MODE_PERIODIC = register("Mode Periodic");
+    public static final int SENSORS = register("Sensors");
+    public static final int BUTTONS = register("Buttons");
+    public static final int DASHBOARD = register("Dashboard");
+
+    private LoopProfiler() {}
+
+    /** Returns the id for name, registering it the first time. */
+    public static int register(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (componentCount == MAX_COMPONENTS) {
+            // Out of slots, lump it in with the whole loop rather than fail
+            return LOOP;
+        }
+        int newId = componentCount++;
+        ids.put(name, newId);
+        names[newId] = name;
+        publishers[newId] = table.getDoubleArrayTopic(name).publish();
+        return newId;
+    }
+
+    /** Start timing a component, for code we can wrap like a subsystem periodic. */
+    public static void begin(int id) {
+        startNanos[id] = System.nanoTime();
+    }
+
+    public static void end(int id) {
+        long now = System.nanoTime();
+        cycleNanos[id] += now - startNanos[id];
+        lastMark = now;
+    }
+
+    /** Resets the running mark, the next call to mark() is timed from here. */
+    public static void mark() {
+        lastMark = System.nanoTime();
+    }
+
+    /** Charges the time since the last mark to a component, for code we only see the end of. */
+    public static void mark(int id) {
+        long now = System.nanoTime();
+        cycleNanos[id] += now - lastMark;
+        lastMark = now;
+    }
+
+    /* Registered with CommandScheduler.onCommandExecute, which runs right after each execute() */
+    public static void commandExecuted(Command command) {
+        mark(register(command.getName()));
+    }
+
+    public static void beginLoop() {
+        loopStart = System.nanoTime();
+        lastMark = loopStart;
+    }
+
+    public static void endLoop() {
+        long now = System.nanoTime();
+        cycleNanos[LOOP] = now - loopStart;
+
+        int worst = LOOP;
+        for (int i = 0; i < componentCount; i++) {
+            if (cycleNanos[i] == 0) {
+                continue;
+            }
+            double ms = cycleNanos[i] / 1e6;
+            int bucket = Math.min((int) (ms / BUCKET_MS), BUCKETS - 1);
+            histograms[i][bucket]++;
+            samples[i]++;
+            maxMs[i] = Math.max(maxMs[i], ms);
+            if (i != LOOP && (worst == LOOP || cycleNanos[i] > cycleNanos[worst])) {
+                worst = i;
+            }
+        }
+
+        double loopMs = cycleNanos[LOOP] / 1e6;
+        if (loopMs > LOOP_PERIOD_MS) {
+            overruns[LOOP]++;
+            overruns[worst]++;
+            DriverStation.reportWarning(
+                "Loop overrun " + loopMs + "ms, longest was " + names[worst] + " at " + cycleNanos[worst] / 1e6 + "ms",
+                false);
+        }
+
+        for (int i = 0; i < componentCount; i++) {
+            cycleNanos[i] = 0;
+        }
+
+        if (++loopsSincePublish >= PUBLISH_PERIOD_LOOPS) {
+            loopsSincePublish = 0;
+            publish();
+        }
+    }
+
+    private static void publish() {
+        for (int i = 0; i < componentCount; i++) {
+            if (samples[i] == 0) {
+                continue;
+            }
+            publishScratch[0] = percentile(i, 0.50);
+            publishScratch[1] = percentile(i, 0.99);
+            publishScratch[2] = maxMs[i];
+            publishScratch[3] = overruns[i];
+            publishers[i].set(publishScratch);
+        }
+    }
+
+    /* Upper edge of the bucket the percentile falls in, ms */
+    private static double percentile(int id, double percentile) {
+        long target = (long) Math.ceil(samples[id] * percentile);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += histograms[id][bucket];
+            if (seen >= target) {
+                return (bucket + 1) * BUCKET_MS;
+            }
+        }
+        return maxMs[id];
+    }
+}
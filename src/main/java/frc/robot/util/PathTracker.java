@@ -0,0 +1,137 @@
+package frc.robot.util;
+
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.commands.PPSwerveControllerCommand;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.subsystems.DrivetrainSubsystem;
+
+/**
+ * Publishes how well autonomous paths are followed. Hooks into PathPlanner's logging callbacks,
+ * so every PPSwerveControllerCommand reports its per-sample position, heading and velocity error
+ * here, and keeps a summary (max, RMS, time to finish) for the path currently running. A second
+ * summary covers every path since resetTotals(), for whole autos made of several paths.
+ */
+public class PathTracker {
+    private final DrivetrainSubsystem drivetrain;
+    private final double[] measuredSpeeds = new double[3];
+    private final Telemetry.DoubleSignal expectedTimeSignal = Telemetry.doubleSignal("/SmartDashboard/Auto Tracking/Expected Time");
+    private final Telemetry.DoubleSignal positionErrorSignal = Telemetry.doubleSignal("/SmartDashboard/Auto Tracking/Position Error");
+    private final Telemetry.DoubleSignal headingErrorSignal = Telemetry.doubleSignal("/SmartDashboard/Auto Tracking/Heading Error");
+    private final Telemetry.DoubleSignal maxPositionErrorSignal = Telemetry.doubleSignal("/SmartDashboard/Auto Tracking/Max Position Error");
+    private final Telemetry.DoubleSignal rmsPositionErrorSignal = Telemetry.doubleSignal("/SmartDashboard/Auto Tracking/RMS Position Error");
+    private final Telemetry.DoubleSignal maxHeadingErrorSignal = Telemetry.doubleSignal("/SmartDashboard/Auto Tracking/Max Heading Error");
+    private final Telemetry.DoubleSignal rmsHeadingErrorSignal = Telemetry.doubleSignal("/SmartDashboard/Auto Tracking/RMS Heading Error");
+    private final Telemetry.DoubleSignal timeToFinishSignal = Telemetry.doubleSignal("/SmartDashboard/Auto Tracking/Time To Finish");
+    private final Telemetry.DoubleSignal velocityErrorSignal = Telemetry.doubleSignal("/SmartDashboard/Auto Tracking/Velocity Error");
+    private final Telemetry.DoubleSignal maxVelocityErrorSignal = Telemetry.doubleSignal("/SmartDashboard/Auto Tracking/Max Velocity Error");
+    private final Telemetry.DoubleSignal rmsVelocityErrorSignal = Telemetry.doubleSignal("/SmartDashboard/Auto Tracking/RMS Velocity Error");
+
+    private double startTime;
+    private double expectedDuration;
+
+    private int positionSamples;
+    private double positionSumSquares;
+    private double maxPositionError;
+    private int headingSamples;
+    private double headingSumSquares;
+    private double maxHeadingError;
+    private int velocitySamples;
+    private double velocitySumSquares;
+    private double maxVelocityError;
+
+    // Every path since resetTotals()
+    private int totalPositionSamples;
+    private double totalPositionSumSquares;
+    private double totalMaxPositionError;
+    private double totalMaxHeadingError;
+
+    public PathTracker(DrivetrainSubsystem drivetrain) {
+        this.drivetrain = drivetrain;
+        PPSwerveControllerCommand.setLoggingCallbacks(
+            this::startRun,
+            pose -> {},
+            this::logSetpoint,
+            this::logError);
+    }
+
+    private void startRun(PathPlannerTrajectory trajectory) {
+        startTime = Timer.getFPGATimestamp();
+        expectedDuration = trajectory.getTotalTimeSeconds();
+        positionSamples = 0;
+        positionSumSquares = 0;
+        maxPositionError = 0;
+        headingSamples = 0;
+        headingSumSquares = 0;
+        maxHeadingError = 0;
+        velocitySamples = 0;
+        velocitySumSquares = 0;
+        maxVelocityError = 0;
+        expectedTimeSignal.set(expectedDuration);
+    }
+
+    private void logError(Translation2d translationError, Rotation2d rotationError) {
+        double positionError = translationError.getNorm();
+        double headingError = Math.abs(rotationError.getDegrees());
+
+        positionSamples++;
+        positionSumSquares += positionError * positionError;
+        maxPositionError = Math.max(maxPositionError, positionError);
+        headingSamples++;
+        headingSumSquares += headingError * headingError;
+        maxHeadingError = Math.max(maxHeadingError, headingError);
+        totalPositionSamples++;
+        totalPositionSumSquares += positionError * positionError;
+        totalMaxPositionError = Math.max(totalMaxPositionError, positionError);
+        totalMaxHeadingError = Math.max(totalMaxHeadingError, headingError);
+
+        positionErrorSignal.set(positionError);
+        headingErrorSignal.set(headingError);
+        maxPositionErrorSignal.set(maxPositionError);
+        rmsPositionErrorSignal.set(Math.sqrt(positionSumSquares / positionSamples));
+        maxHeadingErrorSignal.set(maxHeadingError);
+        rmsHeadingErrorSignal.set(Math.sqrt(headingSumSquares / headingSamples));
+        // The last sample of a path is when it finished
+        timeToFinishSignal.set(Timer.getFPGATimestamp() - startTime);
+    }
+
+    /* The setpoint is robot relative, same as the measured module speeds */
+    private void logSetpoint(ChassisSpeeds setpoint) {
+        drivetrain.getMeasuredSpeeds(measuredSpeeds);
+        double velocityError = Math.hypot(
+            setpoint.vxMetersPerSecond - measuredSpeeds[0],
+            setpoint.vyMetersPerSecond - measuredSpeeds[1]);
+
+        velocitySamples++;
+        velocitySumSquares += velocityError * velocityError;
+        maxVelocityError = Math.max(maxVelocityError, velocityError);
+
+        velocityErrorSignal.set(velocityError);
+        maxVelocityErrorSignal.set(maxVelocityError);
+        rmsVelocityErrorSignal.set(Math.sqrt(velocitySumSquares / velocitySamples));
+    }
+
+    public void resetTotals() {
+        totalPositionSamples = 0;
+        totalPositionSumSquares = 0;
+        totalMaxPositionError = 0;
+        totalMaxHeadingError = 0;
+    }
+
+    /* Meters, over every path since resetTotals() */
+    public double getTotalMaxPositionError() {
+        return totalMaxPositionError;
+    }
+
+    public double getTotalRmsPositionError() {
+        return totalPositionSamples == 0 ? 0 : Math.sqrt(totalPositionSumSquares / totalPositionSamples);
+    }
+
+    /* Degrees */
+    public double getTotalMaxHeadingError() {
+        return totalMaxHeadingError;
+    }
+}
@@ -0,0 +1,196 @@
+package frc.robot.util;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Swerve odometry that keeps a fixed size ring buffer of timestamped poses so that late vision
+ * measurements can be applied at the time the camera actually saw the field.
+ *
+ * <p>A vision pose is blended with the interpolated odometry pose at its capture time, then every
+ * pose recorded after that is moved along with it. Since odometry only ever adds robot relative
+ * motion, moving the later poses as a rigid body gives the same result as replaying the encoder
+ * updates from the corrected pose.
+ */
+public class PoseHistoryEstimator {
+    private final FastSwerveOdometry odometry;
+
+    private final int capacity;
+    private final double[] historyTime;
+    private final double[] historyX;
+    private final double[] historyY;
+    private final double[] historyTheta;
+    private int head = 0; // next slot to write
+    private int size = 0;
+
+    // Per axis gain of a vision measurement, from the state and vision standard deviations
+    private final double[] stateVariances = new double[3];
+    private final double[] visionGains = new double[3];
+    private final double[] sample = new double[3];
+
+    private double lastGyroAngle;
+    private final double[] lastDistances;
+
+    /**
+     * @param stateStdDevs how much the odometry is trusted {x meters, y meters, theta radians}
+     * @param visionStdDevs how much vision is trusted {x meters, y meters, theta radians}
+     */
+    public PoseHistoryEstimator(FastSwerveKinematics kinematics, double gyroAngleRadians, double[] distances,
+            int historySize, double[] stateStdDevs, double[] visionStdDevs) {
+        odometry = new FastSwerveOdometry(kinematics, gyroAngleRadians, distances);
+        capacity = historySize;
+        historyTime = new double[capacity];
+        historyX = new double[capacity];
+        historyY = new double[capacity];
+        historyTheta = new double[capacity];
+        lastDistances = distances.clone();
+        lastGyroAngle = gyroAngleRadians;
+        setVisionStdDevs(stateStdDevs, visionStdDevs);
+    }
+
+    public void setVisionStdDevs(double[] stateStdDevs, double[] visionStdDevs) {
+        for (int i = 0; i < 3; i++) {
+            stateVariances[i] = stateStdDevs[i] * stateStdDevs[i];
+            visionGains[i] = gain(stateVariances[i], visionStdDevs[i]);
+        }
+    }
+
+    private static double gain(double stateVariance, double visionStdDev) {
+        double r = visionStdDev * visionStdDev;
+        return stateVariance + r == 0 ? 0 : stateVariance / (stateVariance + r);
+    }
+
+    public void resetPosition(double gyroAngleRadians, double[] distances, double x, double y, double theta) {
+        odometry.resetPosition(gyroAngleRadians, distances, x, y, theta);
+        lastGyroAngle = gyroAngleRadians;
+        System.arraycopy(distances, 0, lastDistances, 0, lastDistances.length);
+        size = 0;
+    }
+
+    public void update(double timestamp, double gyroAngleRadians, double[] distances, double[] anglesRadians) {
+        odometry.update(gyroAngleRadians, distances, anglesRadians);
+        lastGyroAngle = gyroAngleRadians;
+        System.arraycopy(distances, 0, lastDistances, 0, lastDistances.length);
+
+        historyTime[head] = timestamp;
+        historyX[head] = odometry.getX();
+        historyY[head] = odometry.getY();
+        historyTheta[head] = odometry.getTheta();
+        head = (head + 1) % capacity;
+        if (size < capacity) {
+            size++;
+        }
+    }
+
+    /**
+     * Applies a vision pose captured at timestamp.
+     *
+     * @return false if the measurement is older than the history buffer and was ignored
+     */
+    public boolean addVisionMeasurement(double x, double y, double theta, double timestamp) {
+        return applyVision(x, y, theta, timestamp, visionGains[0], visionGains[1], visionGains[2]);
+    }
+
+    /**
+     * Applies a vision pose captured at timestamp, trusted by its own standard deviations instead
+     * of the ones the estimator was made with.
+     *
+     * @return false if the measurement is older than the history buffer and was ignored
+     */
+    public boolean addVisionMeasurement(double x, double y, double theta, double timestamp,
+            double xyStdDev, double thetaStdDev) {
+        return applyVision(x, y, theta, timestamp,
+                gain(stateVariances[0], xyStdDev), gain(stateVariances[1], xyStdDev), gain(stateVariances[2], thetaStdDev));
+    }
+
+    private boolean applyVision(double x, double y, double theta, double timestamp,
+            double gainX, double gainY, double gainTheta) {
+        if (size == 0 || timestamp < historyTime[index(0)]) {
+            return false;
+        }
+        int first = sampleAt(timestamp, sample);
+        double sampleX = sample[0];
+        double sampleY = sample[1];
+        double sampleTheta = sample[2];
+
+        double correctedX = sampleX + gainX * (x - sampleX);
+        double correctedY = sampleY + gainY * (y - sampleY);
+        double correctedTheta = MathUtil.angleModulus(
+                sampleTheta + gainTheta * MathUtil.angleModulus(theta - sampleTheta));
+
+        double sampleCos = Math.cos(sampleTheta);
+        double sampleSin = Math.sin(sampleTheta);
+        double correctedCos = Math.cos(correctedTheta);
+        double correctedSin = Math.sin(correctedTheta);
+        for (int i = first; i < size; i++) {
+            int slot = index(i);
+            // Motion since the sample in the sample's frame, then applied to the corrected pose
+            double dx = historyX[slot] - sampleX;
+            double dy = historyY[slot] - sampleY;
+            double relativeX = sampleCos * dx + sampleSin * dy;
+            double relativeY = -sampleSin * dx + sampleCos * dy;
+            double relativeTheta = historyTheta[slot] - sampleTheta;
+
+            historyX[slot] = correctedX + correctedCos * relativeX - correctedSin * relativeY;
+            historyY[slot] = correctedY + correctedSin * relativeX + correctedCos * relativeY;
+            historyTheta[slot] = MathUtil.angleModulus(correctedTheta + relativeTheta);
+        }
+
+        int newest = index(size - 1);
+        odometry.resetPosition(lastGyroAngle, lastDistances, historyX[newest], historyY[newest], historyTheta[newest]);
+        return true;
+    }
+
+    /**
+     * Interpolates the recorded pose at timestamp into out {x, y, theta}.
+     *
+     * @return the index (oldest = 0) of the first recorded pose that should be corrected
+     */
+    private int sampleAt(double timestamp, double[] out) {
+        // First entry with time > timestamp
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (historyTime[index(mid)] <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        if (low == size) {
+            int newest = index(size - 1);
+            out[0] = historyX[newest];
+            out[1] = historyY[newest];
+            out[2] = historyTheta[newest];
+            // Newer than anything recorded, correct the current pose
+            return size - 1;
+        }
+
+        int after = index(low);
+        int before = index(Math.max(low - 1, 0));
+        double span = historyTime[after] - historyTime[before];
+        double t = span <= 0 ? 1 : (timestamp - historyTime[before]) / span;
+        out[0] = historyX[before] + (historyX[after] - historyX[before]) * t;
+        out[1] = historyY[before] + (historyY[after] - historyY[before]) * t;
+        out[2] = MathUtil.angleModulus(
+                historyTheta[before] + MathUtil.angleModulus(historyTheta[after] - historyTheta[before]) * t);
+        return low;
+    }
+
+    private int index(int i) {
+        return (head - size + i + capacity) % capacity;
+    }
+
+    public double getX() {
+        return odometry.getX();
+    }
+
+    public double getY() {
+        return odometry.getY();
+    }
+
+    public double getTheta() {
+        return odometry.getTheta();
+    }
+}
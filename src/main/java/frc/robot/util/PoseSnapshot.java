@@ -0,0 +1,45 @@
+package frc.robot.util;
+
+/**
+ * Latest robot pose shared between the odometry thread and the main loop. Writers are
+ * serialized by the caller, readers never block: they retry if a write happened while they
+ * were copying (a sequence lock), so no new objects are made to pass the pose around.
+ */
+public class PoseSnapshot {
+    private volatile int sequence = 0;
+    private volatile double x;
+    private volatile double y;
+    private volatile double theta;
+    private volatile double timestamp;
+
+    /** Only call from one thread at a time. */
+    public void publish(double x, double y, double theta, double timestamp) {
+        sequence++; // odd while writing
+        this.x = x;
+        this.y = y;
+        this.theta = theta;
+        this.timestamp = timestamp;
+        sequence++;
+    }
+
+    /**
+     * Copies the latest pose into out as {x, y, theta, timestamp}.
+     *
+     * @return the sequence number of the copied pose, changes whenever a new pose is published
+     */
+    public int read(double[] out) {
+        while (true) {
+            int before = sequence;
+            if ((before & 1) == 0) {
+                out[0] = x;
+                out[1] = y;
+                out[2] = theta;
+                out[3] = timestamp;
+                if (sequence == before) {
+                    return before;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+}
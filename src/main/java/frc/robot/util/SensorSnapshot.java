@@ -0,0 +1,102 @@
+package frc.robot.util;
+
+/**
+ * Every sensor reading the main loop uses, taken once at the start of each robot loop by
+ * RobotContainer.updateSensors(). Subsystems read from here instead of from the hardware so a
+ * loop only makes each HAL/CAN call once and every calculation in it sees the same data.
+ */
+public class SensorSnapshot {
+    private double timestamp;
+
+    private double gyroYawRadians;
+    private double gyroPitchDegrees;
+    private double gyroRollDegrees;
+    private double gyroYawRateDegreesPerSecond;
+    private double gyroPitchRateDegreesPerSecond;
+    private double gyroRollRateDegreesPerSecond;
+
+    // Front left, front right, back left, back right
+    private final double[] driveVelocities = new double[4];
+    private final double[] steerAngles = new double[4];
+
+    private double armPosition;
+    private double floorArmPosition;
+
+    /* FPGA time in seconds the snapshot was taken at */
+    public double getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(double timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public void setGyro(double yawRadians, double pitchDegrees, double rollDegrees,
+            double yawRate, double pitchRate, double rollRate) {
+        gyroYawRadians = yawRadians;
+        gyroPitchDegrees = pitchDegrees;
+        gyroRollDegrees = rollDegrees;
+        gyroYawRateDegreesPerSecond = yawRate;
+        gyroPitchRateDegreesPerSecond = pitchRate;
+        gyroRollRateDegreesPerSecond = rollRate;
+    }
+
+    public void setGyroYawRadians(double yawRadians) {
+        gyroYawRadians = yawRadians;
+    }
+
+    public double getGyroYawRadians() {
+        return gyroYawRadians;
+    }
+
+    public double getGyroPitchDegrees() {
+        return gyroPitchDegrees;
+    }
+
+    public double getGyroRollDegrees() {
+        return gyroRollDegrees;
+    }
+
+    public double getGyroYawRateDegreesPerSecond() {
+        return gyroYawRateDegreesPerSecond;
+    }
+
+    public double getGyroPitchRateDegreesPerSecond() {
+        return gyroPitchRateDegreesPerSecond;
+    }
+
+    public double getGyroRollRateDegreesPerSecond() {
+        return gyroRollRateDegreesPerSecond;
+    }
+
+    public void setModule(int module, double driveVelocity, double steerAngle) {
+        driveVelocities[module] = driveVelocity;
+        steerAngles[module] = steerAngle;
+    }
+
+    /* Meters per second */
+    public double getDriveVelocity(int module) {
+        return driveVelocities[module];
+    }
+
+    /* Radians */
+    public double getSteerAngle(int module) {
+        return steerAngles[module];
+    }
+
+    public double getArmPosition() {
+        return armPosition;
+    }
+
+    public void setArmPosition(double armPosition) {
+        this.armPosition = armPosition;
+    }
+
+    public double getFloorArmPosition() {
+        return floorArmPosition;
+    }
+
+    public void setFloorArmPosition(double floorArmPosition) {
+        this.floorArmPosition = floorArmPosition;
+    }
+}
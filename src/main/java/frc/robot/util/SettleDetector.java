@@ -0,0 +1,101 @@
+package frc.robot.util;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Decides when a mechanism on an absolute encoder (rotations, wrapping at 0/1) has arrived at its
+ * target: within a position tolerance and moving slower than a velocity tolerance, for a few loops
+ * in a row so passing through the target on an overshoot doesn't count. Velocity is taken over
+ * the whole window rather than between two loops, since the encoder frames and the robot loop
+ * aren't synchronized and a one loop difference alternates between zero and double.
+ *
+ * <p>Stops counting as settled as soon as the mechanism leaves the position tolerance, so a
+ * command re-issued to the same target after the arm was knocked off waits for it to come back.
+ * Also times each move from the target change to arrival. Called once a loop with the snapshot
+ * position, allocates nothing.
+ */
+public class SettleDetector {
+    private final double positionTolerance;
+    private final double velocityTolerance;
+    private final double[] window;
+    private final double period;
+    private int index = 0;
+    private int filled = 0;
+
+    private double target = Double.NaN;
+    private double moveStart;
+    private boolean settled = false;
+    // Whether a move is being timed, a return after being knocked off isn't a new arrival
+    private boolean moving = false;
+    private double arrivalSeconds = Double.NaN;
+
+    /**
+     * @param positionTolerance rotations
+     * @param velocityTolerance rotations per second
+     * @param loops how many loops in a row it has to stay settled
+     * @param period loop period in seconds
+     */
+    public SettleDetector(double positionTolerance, double velocityTolerance, int loops, double period) {
+        this.positionTolerance = positionTolerance;
+        this.velocityTolerance = velocityTolerance;
+        this.window = new double[loops + 1];
+        this.period = period;
+    }
+
+    /* Starts timing a new move, ignored if the target didn't actually change */
+    public void setTarget(double target, double now) {
+        if (target == this.target) {
+            return;
+        }
+        this.target = target;
+        moveStart = now;
+        moving = true;
+        settled = false;
+        filled = 0;
+    }
+
+    /**
+     * @param goalReached whether the motion profile, if any, has finished, so a slow profile
+     *     passing the target on the way doesn't count
+     * @return true the first loop it counts as settled after a target change
+     */
+    public boolean update(double position, double now, boolean goalReached) {
+        window[index] = position;
+        index = (index + 1) % window.length;
+        boolean inPosition = Math.abs(wrap(position - target)) <= positionTolerance && goalReached;
+        filled = inPosition ? Math.min(filled + 1, window.length) : 0;
+        if (filled < window.length) {
+            settled = false;
+            return false;
+        }
+        if (settled) {
+            return false;
+        }
+
+        // index is now the oldest sample in the window
+        double travel = Math.abs(wrap(position - window[index]));
+        if (travel / ((window.length - 1) * period) > velocityTolerance) {
+            return false;
+        }
+        settled = true;
+        if (!moving) {
+            return false;
+        }
+        moving = false;
+        arrivalSeconds = now - moveStart;
+        return true;
+    }
+
+    public boolean isSettled() {
+        return settled;
+    }
+
+    /* Seconds the last finished move took, NaN until one has */
+    public double getArrivalSeconds() {
+        return arrivalSeconds;
+    }
+
+    private static double wrap(double rotations) {
+        return MathUtil.inputModulus(rotations, -0.5, 0.5);
+    }
+}
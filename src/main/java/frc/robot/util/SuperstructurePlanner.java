@@ -0,0 +1,296 @@
+package frc.robot.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import edu.wpi.first.math.MathUtil;
+import frc.robot.Constants;
+
+/**
+ * Plans moves of the main arm and the floor arm together, in joint space (arm rotations, floor
+ * arm rotations). Where the two would hit each other is given as keep-out boxes in
+ * SUPERSTRUCTURE_KEEP_OUT. A plan is a list of waypoints where both arms move at once between
+ * consecutive ones.
+ *
+ * <p>Each arm follows its own profile, so between two waypoints the arms don't move along the
+ * straight line. Each one does move monotonically, though, so the pair stays inside the rectangle
+ * the two waypoints span. A leg is only allowed when that whole rectangle is clear. The search is
+ * Dijkstra over a grid, with a leg costing the time of the slower arm. The floor arm's speed is its
+ * profile velocity in state space mode and FLOOR_ARM_PID_AVERAGE_VELOCITY with the PID. The result
+ * is then shortcut to as few legs as possible.
+ *
+ * <p>Plans between every pair of presets are made once at construction. Moves from anywhere else
+ * are planned when they are asked for.
+ */
+public class SuperstructurePlanner {
+    public enum Preset {
+        STOWED(Constants.ARM_INSIDE_ROBOT_POSITION, Constants.FLOOR_ARM_INSIDE_ROBOT_POSITION),
+        SCORE_HIGH(Constants.ARM_SCORE_HIGH_POSITION, Constants.FLOOR_ARM_INSIDE_ROBOT_POSITION),
+        SCORE_MID(Constants.ARM_SCORE_MID_POSITION, Constants.FLOOR_ARM_INSIDE_ROBOT_POSITION),
+        HUMAN_PLAYER(Constants.ARM_HUMAN_PLAYER_POSITION, Constants.FLOOR_ARM_INSIDE_ROBOT_POSITION),
+        FLOOR_GROUND(Constants.ARM_INSIDE_ROBOT_POSITION, Constants.FLOOR_ARM_GROUND_POSITION),
+        FLOOR_SHOOTING(Constants.ARM_INSIDE_ROBOT_POSITION, Constants.FLOOR_ARM_SHOOTING_POSITION);
+
+        public final double arm;
+        public final double floor;
+
+        Preset(double arm, double floor) {
+            this.arm = arm;
+            this.floor = toPlanFloor(floor);
+        }
+    }
+
+    /** Waypoints as {arm, floor} in planning coordinates, the first is where it started. */
+    public static final class Plan {
+        public final double[][] waypoints;
+        public final double seconds;
+        /* How long moving one arm at a time, as the operator presets used to, would take instead */
+        public final double sequentialSeconds;
+
+        Plan(double[][] waypoints, double sequentialSeconds) {
+            this.waypoints = waypoints;
+            this.seconds = pathSeconds(waypoints);
+            this.sequentialSeconds = sequentialSeconds;
+        }
+    }
+
+    private static final int RESOLUTION = Constants.SUPERSTRUCTURE_PLAN_RESOLUTION;
+    private static final double ARM_STEP = (Constants.SUPERSTRUCTURE_ARM_PLAN_MAX - Constants.SUPERSTRUCTURE_ARM_PLAN_MIN) / (RESOLUTION - 1);
+    private static final double FLOOR_STEP = (Constants.SUPERSTRUCTURE_FLOOR_PLAN_MAX - Constants.SUPERSTRUCTURE_FLOOR_PLAN_MIN) / (RESOLUTION - 1);
+    // The floor arm only follows a profile in state space mode, the PID's speed is measured
+    private static final double FLOOR_VELOCITY = Constants.FLOOR_ARM_STATE_SPACE_ENABLED
+        ? Constants.FLOOR_ARM_MAX_VELOCITY : Constants.FLOOR_ARM_PID_AVERAGE_VELOCITY;
+
+    private final Plan[][] cache = new Plan[Preset.values().length][Preset.values().length];
+
+    public SuperstructurePlanner() {
+        for (Preset from : Preset.values()) {
+            for (Preset to : Preset.values()) {
+                cache[from.ordinal()][to.ordinal()] = plan(new double[] { from.arm, from.floor }, new double[] { to.arm, to.floor });
+            }
+        }
+    }
+
+    /* Floor arm encoder reading to planning coordinates */
+    public static double toPlanFloor(double floorPosition) {
+        return MathUtil.inputModulus(floorPosition, Constants.SUPERSTRUCTURE_FLOOR_UNWRAP_START,
+            Constants.SUPERSTRUCTURE_FLOOR_UNWRAP_START + 1);
+    }
+
+    /* Planning coordinates back to a floor arm target */
+    public static double toFloorPosition(double planFloor) {
+        return MathUtil.inputModulus(planFloor, 0, 1);
+    }
+
+    /** The preset within SUPERSTRUCTURE_PRESET_TOLERANCE of the arms, or null. */
+    public static Preset nearestPreset(double arm, double floor) {
+        for (Preset preset : Preset.values()) {
+            if (Math.abs(arm - preset.arm) <= Constants.SUPERSTRUCTURE_PRESET_TOLERANCE
+                    && Math.abs(floor - preset.floor) <= Constants.SUPERSTRUCTURE_PRESET_TOLERANCE) {
+                return preset;
+            }
+        }
+        return null;
+    }
+
+    public Plan getPlan(Preset from, Preset to) {
+        return cache[from.ordinal()][to.ordinal()];
+    }
+
+    /** From the arms' current positions (floor in planning coordinates), cached when they are at a preset. */
+    public Plan getPlan(double arm, double floor, Preset to) {
+        Preset from = nearestPreset(arm, floor);
+        if (from != null) {
+            return getPlan(from, to);
+        }
+        return plan(new double[] { arm, floor }, new double[] { to.arm, to.floor });
+    }
+
+    /** Whether both arms can move from a to b at once without entering a keep-out box. */
+    public static boolean isClear(double[] a, double[] b) {
+        double armMin = Math.min(a[0], b[0]);
+        double armMax = Math.max(a[0], b[0]);
+        double floorMin = Math.min(a[1], b[1]);
+        double floorMax = Math.max(a[1], b[1]);
+        for (double[] box : Constants.SUPERSTRUCTURE_KEEP_OUT) {
+            if (armMin < box[1] && armMax > box[0] && floorMin < box[3] && floorMax > box[2]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Time for the slower of the two arms, at the speed each one moves in its active control mode */
+    private static double legSeconds(double[] a, double[] b) {
+        return Math.max(Math.abs(b[0] - a[0]) / Constants.MAX_ARM_VELOCITY,
+            Math.abs(b[1] - a[1]) / FLOOR_VELOCITY);
+    }
+
+    private static double pathSeconds(double[][] waypoints) {
+        double total = 0;
+        for (int i = 1; i < waypoints.length; i++) {
+            total += legSeconds(waypoints[i - 1], waypoints[i]);
+        }
+        return total;
+    }
+
+    private static Plan plan(double[] start, double[] goal) {
+        // One arm at a time, whichever order is clear, or through stowed if neither is. This is
+        // what the operator presets used to do, and the fallback when there is no clear plan
+        double[] floorFirst = { start[0], goal[1] };
+        double[] armFirst = { goal[0], start[1] };
+        double[][] sequential;
+        if (isClear(start, armFirst) && isClear(armFirst, goal)) {
+            sequential = new double[][] { start, armFirst, goal };
+        } else if (isClear(start, floorFirst) && isClear(floorFirst, goal)) {
+            sequential = new double[][] { start, floorFirst, goal };
+        } else {
+            sequential = new double[][] {
+                start,
+                { Constants.ARM_INSIDE_ROBOT_POSITION, start[1] },
+                { Constants.ARM_INSIDE_ROBOT_POSITION, goal[1] },
+                goal
+            };
+        }
+        double sequentialSeconds = pathSeconds(sequential);
+
+        if (isClear(start, goal)) {
+            return new Plan(new double[][] { start, goal }, sequentialSeconds);
+        }
+        List<double[]> path = search(start, goal);
+        if (path == null) {
+            return new Plan(sequential, sequentialSeconds);
+        }
+
+        // Skip ahead to the furthest waypoint that can be reached in one leg
+        List<double[]> shortcut = new ArrayList<double[]>();
+        int i = 0;
+        shortcut.add(path.get(0));
+        while (i < path.size() - 1) {
+            int j = path.size() - 1;
+            while (j > i + 1 && !isClear(path.get(i), path.get(j))) {
+                j--;
+            }
+            shortcut.add(path.get(j));
+            i = j;
+        }
+        return new Plan(shortcut.toArray(new double[0][]), sequentialSeconds);
+    }
+
+    /* Dijkstra over the grid, with start and goal as two extra nodes joined to the grid points around them */
+    private static List<double[]> search(double[] start, double[] goal) {
+        int gridNodes = RESOLUTION * RESOLUTION;
+        int startNode = gridNodes;
+        int goalNode = gridNodes + 1;
+        double[][] points = new double[gridNodes + 2][];
+        for (int a = 0; a < RESOLUTION; a++) {
+            for (int f = 0; f < RESOLUTION; f++) {
+                points[a * RESOLUTION + f] = new double[] {
+                    Constants.SUPERSTRUCTURE_ARM_PLAN_MIN + a * ARM_STEP,
+                    Constants.SUPERSTRUCTURE_FLOOR_PLAN_MIN + f * FLOOR_STEP
+                };
+            }
+        }
+        points[startNode] = start;
+        points[goalNode] = goal;
+
+        double[] cost = new double[points.length];
+        int[] previous = new int[points.length];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        Arrays.fill(previous, -1);
+        cost[startNode] = 0;
+        PriorityQueue<double[]> open = new PriorityQueue<double[]>((x, y) -> Double.compare(x[0], y[0]));
+        open.add(new double[] { 0, startNode });
+
+        int goalCell = cell(goal);
+        int[] neighbors = new int[9];
+        while (!open.isEmpty()) {
+            double[] entry = open.poll();
+            int node = (int) entry[1];
+            if (entry[0] > cost[node]) {
+                continue;
+            }
+            if (node == goalNode) {
+                break;
+            }
+            int count = neighbors(node, points, goalCell, neighbors);
+            for (int n = 0; n < count; n++) {
+                int next = neighbors[n];
+                if (!isClear(points[node], points[next])) {
+                    continue;
+                }
+                double nextCost = cost[node] + legSeconds(points[node], points[next]);
+                if (nextCost < cost[next]) {
+                    cost[next] = nextCost;
+                    previous[next] = node;
+                    open.add(new double[] { nextCost, next });
+                }
+            }
+        }
+        if (previous[goalNode] == -1) {
+            return null;
+        }
+
+        List<double[]> path = new ArrayList<double[]>();
+        for (int node = goalNode; node != -1; node = previous[node]) {
+            path.add(0, points[node]);
+        }
+        return path;
+    }
+
+    /* Grid node at the low corner of the cell point sits in, -1 if it is outside the grid */
+    private static int cell(double[] point) {
+        int a = (int) Math.floor((point[0] - Constants.SUPERSTRUCTURE_ARM_PLAN_MIN) / ARM_STEP);
+        int f = (int) Math.floor((point[1] - Constants.SUPERSTRUCTURE_FLOOR_PLAN_MIN) / FLOOR_STEP);
+        if (a < 0 || a >= RESOLUTION || f < 0 || f >= RESOLUTION) {
+            return -1;
+        }
+        return a * RESOLUTION + f;
+    }
+
+    /* Fills neighbors with the nodes joined to node and returns how many */
+    private static int neighbors(int node, double[][] points, int goalCell, int[] neighbors) {
+        int gridNodes = RESOLUTION * RESOLUTION;
+        int count = 0;
+        if (node >= gridNodes) {
+            // Start, joined to the corners of the grid cell it sits in
+            int startCell = cell(points[node]);
+            if (startCell == -1) {
+                return 0;
+            }
+            int a = startCell / RESOLUTION;
+            int f = startCell % RESOLUTION;
+            for (int da = 0; da <= 1; da++) {
+                for (int df = 0; df <= 1; df++) {
+                    int na = a + da;
+                    int nf = f + df;
+                    if (na >= 0 && na < RESOLUTION && nf >= 0 && nf < RESOLUTION) {
+                        neighbors[count++] = na * RESOLUTION + nf;
+                    }
+                }
+            }
+            return count;
+        }
+
+        int a = node / RESOLUTION;
+        int f = node % RESOLUTION;
+        for (int da = -1; da <= 1; da++) {
+            for (int df = -1; df <= 1; df++) {
+                int na = a + da;
+                int nf = f + df;
+                if ((da != 0 || df != 0) && na >= 0 && na < RESOLUTION && nf >= 0 && nf < RESOLUTION) {
+                    neighbors[count++] = na * RESOLUTION + nf;
+                }
+            }
+        }
+        // The corners of the goal's cell lead to the goal
+        int goalA = goalCell / RESOLUTION;
+        int goalF = goalCell % RESOLUTION;
+        if (goalCell != -1 && (a == goalA || a == goalA + 1) && (f == goalF || f == goalF + 1)) {
+            neighbors[count++] = gridNodes + 1;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,185 @@
+package frc.robot.util;
+
+import edu.wpi.first.networktables.BooleanPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.util.datalog.BooleanLogEntry;
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.Notifier;
+import frc.robot.Constants;
+
+/**
+ * Batched telemetry. The main loop only copies a timestamp and a value into a preallocated ring
+ * buffer per signal, so logging costs the same small amount whatever is being logged. A background
+ * notifier drains the buffers into the WPILOG file (DataLogManager writes to the USB drive when one
+ * is plugged in) every TELEMETRY_LOG_PERIOD_SECONDS, and publishes the latest value of each signal
+ * to NetworkTables every TELEMETRY_NT_PERIOD_SECONDS.
+ *
+ * <p>Signals are written from the main thread only. Names are full NT topic paths, like
+ * "/SmartDashboard/Gyro Roll", so existing dashboard layouts keep working.
+ */
+public final class Telemetry {
+    private static final int CAPACITY = 64; // 1.28s of samples at 50hz, must be a power of 2
+    private static final int MASK = CAPACITY - 1;
+
+    private static volatile Signal[] signals = new Signal[0];
+    private static Notifier flushNotifier;
+    private static DataLog log;
+    private static long timestampMicros;
+    private static int flushesSincePublish = 0;
+
+    private Telemetry() {}
+
+    /** Starts the data log and the flush thread, call once from robotInit before making signals. */
+    public static synchronized void start() {
+        if (flushNotifier != null) {
+            return;
+        }
+        DataLogManager.start();
+        log = DataLogManager.getLog();
+        flushNotifier = new Notifier(Telemetry::flush);
+        flushNotifier.setName("Telemetry");
+        flushNotifier.startPeriodic(Constants.TELEMETRY_LOG_PERIOD_SECONDS);
+    }
+
+    /** FPGA time in seconds stamped on every sample written until the next call. */
+    public static void setTimestamp(double timestampSeconds) {
+        timestampMicros = (long) (timestampSeconds * 1e6);
+    }
+
+    public static DoubleSignal doubleSignal(String name) {
+        DoubleSignal signal = new DoubleSignal(name);
+        add(signal);
+        return signal;
+    }
+
+    public static BooleanSignal booleanSignal(String name) {
+        BooleanSignal signal = new BooleanSignal(name);
+        add(signal);
+        return signal;
+    }
+
+    private static synchronized void add(Signal signal) {
+        Signal[] newSignals = new Signal[signals.length + 1];
+        System.arraycopy(signals, 0, newSignals, 0, signals.length);
+        newSignals[signals.length] = signal;
+        signals = newSignals;
+    }
+
+    private static synchronized void flush() {
+        boolean publish = false;
+        if (++flushesSincePublish * Constants.TELEMETRY_LOG_PERIOD_SECONDS >= Constants.TELEMETRY_NT_PERIOD_SECONDS) {
+            flushesSincePublish = 0;
+            publish = true;
+        }
+        for (Signal signal : signals) {
+            signal.flush(publish);
+        }
+    }
+
+    /* Single producer (main thread), single consumer (flush thread) ring buffer */
+    private abstract static class Signal {
+        protected final String name;
+        private final long[] times = new long[CAPACITY];
+        private final double[] values = new double[CAPACITY];
+        private volatile long writeIndex = 0;
+        private long readIndex = 0;
+        private boolean entryCreated = false;
+
+        Signal(String name) {
+            this.name = name;
+        }
+
+        protected void write(double value) {
+            long index = writeIndex;
+            times[(int) (index & MASK)] = timestampMicros;
+            values[(int) (index & MASK)] = value;
+            writeIndex = index + 1;
+        }
+
+        void flush(boolean publish) {
+            if (log != null && !entryCreated) {
+                createEntry(log);
+                entryCreated = true;
+            }
+            long end = writeIndex;
+            // If the main loop lapped us, drop what it overwrote (plus the slot it may be writing)
+            long start = Math.max(readIndex, end - CAPACITY + 1);
+            if (entryCreated) {
+                for (long i = start; i < end; i++) {
+                    append(values[(int) (i & MASK)], times[(int) (i & MASK)]);
+                }
+            }
+            readIndex = end;
+            if (publish && end > 0) {
+                publish(values[(int) ((end - 1) & MASK)]);
+            }
+        }
+
+        protected abstract void createEntry(DataLog log);
+
+        protected abstract void append(double value, long timestamp);
+
+        protected abstract void publish(double value);
+    }
+
+    public static final class DoubleSignal extends Signal {
+        private final DoublePublisher publisher;
+        private DoubleLogEntry entry;
+
+        private DoubleSignal(String name) {
+            super(name);
+            publisher = NetworkTableInstance.getDefault().getDoubleTopic(name).publish();
+        }
+
+        public void set(double value) {
+            write(value);
+        }
+
+        @Override
+        protected void createEntry(DataLog log) {
+            entry = new DoubleLogEntry(log, name);
+        }
+
+        @Override
+        protected void append(double value, long timestamp) {
+            entry.append(value, timestamp);
+        }
+
+        @Override
+        protected void publish(double value) {
+            publisher.set(value);
+        }
+    }
+
+    public static final class BooleanSignal extends Signal {
+        private final BooleanPublisher publisher;
+        private BooleanLogEntry entry;
+
+        private BooleanSignal(String name) {
+            super(name);
+            publisher = NetworkTableInstance.getDefault().getBooleanTopic(name).publish();
+        }
+
+        public void set(boolean value) {
+            write(value ? 1 : 0);
+        }
+
+        @Override
+        protected void createEntry(DataLog log) {
+            entry = new BooleanLogEntry(log, name);
+        }
+
+        @Override
+        protected void append(double value, long timestamp) {
+            entry.append(value != 0, timestamp);
+        }
+
+        @Override
+        protected void publish(double value) {
+            publisher.set(value != 0);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package frc.robot.util;
+
+import edu.wpi.first.math.MathUtil;
+import frc.robot.Constants;
+import frc.robot.subsystems.DrivetrainSubsystem;
+import frc.robot.subsystems.Vision;
+
+/**
+ * Decides whether a vision pose is believable before it is fused. A pose is rejected if it is off
+ * the field, further from odometry than the robot could have moved, facing a different way than
+ * the gyro says, or taken while the robot is tilted (on the charge station the camera sees the
+ * tags from the wrong height and angle).
+ *
+ * <p>Accepted poses get their standard deviations scaled up by how fast the robot was moving
+ * (motion blur) and by how far they are from odometry, so a borderline pose only nudges the
+ * estimate. Accept and reject counts are published under Vision/.
+ */
+public class VisionMeasurementFilter {
+    private final DrivetrainSubsystem drivetrain;
+    private final double[] pose = new double[4];
+    private final double[] speeds = new double[3];
+
+    private double lastAcceptedTimestamp = 0;
+    private double xyStdDev;
+    private double thetaStdDev;
+
+    private int accepted = 0;
+    private int offField = 0;
+    private int jumped = 0;
+    private int headingMismatch = 0;
+    private int tilted = 0;
+    private final Telemetry.DoubleSignal acceptedSignal = Telemetry.doubleSignal("/SmartDashboard/Vision/Accepted");
+    private final Telemetry.DoubleSignal offFieldSignal = Telemetry.doubleSignal("/SmartDashboard/Vision/Rejected Off Field");
+    private final Telemetry.DoubleSignal jumpedSignal = Telemetry.doubleSignal("/SmartDashboard/Vision/Rejected Jump");
+    private final Telemetry.DoubleSignal headingSignal = Telemetry.doubleSignal("/SmartDashboard/Vision/Rejected Heading");
+    private final Telemetry.DoubleSignal tiltedSignal = Telemetry.doubleSignal("/SmartDashboard/Vision/Rejected Tilted");
+    private final Telemetry.DoubleSignal xyStdDevSignal = Telemetry.doubleSignal("/SmartDashboard/Vision/XY Std Dev");
+
+    public VisionMeasurementFilter(DrivetrainSubsystem drivetrain) {
+        this.drivetrain = drivetrain;
+    }
+
+    /**
+     * @return true if frame should be fused, with getXYStdDev() and getThetaStdDev()
+     */
+    public boolean test(Vision.Frame frame) {
+        boolean result = check(frame);
+        acceptedSignal.set(accepted);
+        offFieldSignal.set(offField);
+        jumpedSignal.set(jumped);
+        headingSignal.set(headingMismatch);
+        tiltedSignal.set(tilted);
+        return result;
+    }
+
+    private boolean check(Vision.Frame frame) {
+        double x = frame.getX();
+        double y = frame.getY();
+        double margin = Constants.VISION_FIELD_MARGIN_METERS;
+        if (x < -margin || x > Constants.FIELD_WIDTH_METERS + margin
+                || y < -margin || y > Constants.FIELD_HEIGHT_METERS + margin) {
+            offField++;
+            return false;
+        }
+
+        if (Math.abs(drivetrain.getGyroscopePitchDegrees()) > Constants.VISION_MAX_TILT_DEGREES
+                || Math.abs(drivetrain.getGyroscopeRollDegrees()) > Constants.VISION_MAX_TILT_DEGREES) {
+            tilted++;
+            return false;
+        }
+
+        drivetrain.getPose(pose);
+        double headingError = Math.abs(MathUtil.angleModulus(frame.getRotationRadians() - pose[2]));
+        if (headingError > Math.toRadians(Constants.VISION_MAX_HEADING_ERROR_DEGREES)) {
+            headingMismatch++;
+            return false;
+        }
+
+        // The robot moved for the age of the frame, and odometry has drifted since vision last agreed with it
+        drivetrain.getMeasuredSpeeds(speeds);
+        double speed = Math.hypot(speeds[0], speeds[1]);
+        double age = Math.max(0, pose[3] - frame.getTimestamp());
+        double allowedJump = Constants.VISION_JUMP_TOLERANCE_METERS
+                + speed * age
+                + Constants.VISION_ODOMETRY_DRIFT_METERS_PER_SECOND * Math.max(0, frame.getTimestamp() - lastAcceptedTimestamp);
+        double jump = Math.hypot(x - pose[0], y - pose[1]);
+        if (jump > allowedJump) {
+            jumped++;
+            return false;
+        }
+
+        double motionFactor = 1
+                + Constants.VISION_STD_DEV_SPEED_GAIN * speed
+                + Constants.VISION_STD_DEV_ROTATION_GAIN * Math.abs(speeds[2]);
+        double agreementFactor = 1 + jump / allowedJump;
+        xyStdDev = frame.getXYStdDev() * motionFactor * agreementFactor;
+        thetaStdDev = frame.getThetaStdDev() * motionFactor * agreementFactor;
+        xyStdDevSignal.set(xyStdDev);
+
+        accepted++;
+        lastAcceptedTimestamp = frame.getTimestamp();
+        return true;
+    }
+
+    /* Standard deviations for the last accepted frame, meters */
+    public double getXYStdDev() {
+        return xyStdDev;
+    }
+
+    /* Radians */
+    public double getThetaStdDev() {
+        return thetaStdDev;
+    }
+}
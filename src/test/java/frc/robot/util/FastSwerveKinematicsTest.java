@@ -0,0 +1,117 @@
+package frc.robot.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.Constants;
+import org.junit.jupiter.api.Test;
+
+/** Checks FastSwerveKinematics against WPILib's SwerveDriveKinematics on the robot's module layout. */
+class FastSwerveKinematicsTest {
+    private static final double EPSILON = 1e-9;
+    private static final double MAX_SPEED = 4.0;
+    private static final double HALF_TRACK = Constants.DRIVETRAIN_TRACKWIDTH_METERS / 2.0;
+    private static final double HALF_BASE = Constants.DRIVETRAIN_WHEELBASE_METERS / 2.0;
+
+    // Front left, front right, back left, back right, same as DrivetrainSubsystem
+    private static final double[] MODULE_X = { HALF_TRACK, HALF_TRACK, -HALF_TRACK, -HALF_TRACK };
+    private static final double[] MODULE_Y = { HALF_BASE, -HALF_BASE, HALF_BASE, -HALF_BASE };
+
+    // {vx, vy, omega}, including omega only, zero, and speeds that need desaturating
+    private static final double[][] CHASSIS_SPEEDS = {
+        { 1.0, 0, 0 },
+        { 0, -1.5, 0 },
+        { 0.7, 1.2, 0 },
+        { 0, 0, 2.0 },
+        { 0, 0, -3.5 },
+        { 1.0, -0.5, 1.5 },
+        { 0, 0, 0 },
+        { 3.5, 3.5, 0 },
+        { -4.0, 2.0, 6.0 },
+        { 0, 0, 20.0 },
+        { 0, 0, 0 },
+    };
+
+    static SwerveDriveKinematics wpilibKinematics() {
+        Translation2d[] locations = new Translation2d[MODULE_X.length];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = new Translation2d(MODULE_X[i], MODULE_Y[i]);
+        }
+        return new SwerveDriveKinematics(locations);
+    }
+
+    static FastSwerveKinematics fastKinematics() {
+        return new FastSwerveKinematics(MODULE_X, MODULE_Y);
+    }
+
+    private static void assertStatesMatch(SwerveModuleState[] expected, double[] speeds, double[] angles, String message) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].speedMetersPerSecond, speeds[i], EPSILON, message + " module " + i + " speed");
+            assertEquals(0, MathUtil.angleModulus(expected[i].angle.getRadians() - angles[i]), EPSILON,
+                message + " module " + i + " angle");
+        }
+    }
+
+    @Test
+    void moduleStatesMatchWpilib() {
+        SwerveDriveKinematics wpilib = wpilibKinematics();
+        FastSwerveKinematics fast = fastKinematics();
+        double[] speeds = new double[MODULE_X.length];
+        double[] angles = new double[MODULE_X.length];
+
+        // One sequence, so zero speeds are checked to keep the previous headings in both
+        for (double[] chassis : CHASSIS_SPEEDS) {
+            SwerveModuleState[] expected = wpilib.toSwerveModuleStates(new ChassisSpeeds(chassis[0], chassis[1], chassis[2]));
+            fast.toModuleStates(chassis[0], chassis[1], chassis[2], speeds, angles);
+            assertStatesMatch(expected, speeds, angles, Arrays.toString(chassis));
+        }
+    }
+
+    @Test
+    void desaturatedStatesMatchWpilib() {
+        SwerveDriveKinematics wpilib = wpilibKinematics();
+        FastSwerveKinematics fast = fastKinematics();
+        double[] speeds = new double[MODULE_X.length];
+        double[] angles = new double[MODULE_X.length];
+
+        for (double[] chassis : CHASSIS_SPEEDS) {
+            SwerveModuleState[] expected = wpilib.toSwerveModuleStates(new ChassisSpeeds(chassis[0], chassis[1], chassis[2]));
+            SwerveDriveKinematics.desaturateWheelSpeeds(expected, MAX_SPEED);
+            fast.toModuleStates(chassis[0], chassis[1], chassis[2], speeds, angles);
+            FastSwerveKinematics.desaturateWheelSpeeds(speeds, MAX_SPEED);
+            assertStatesMatch(expected, speeds, angles, Arrays.toString(chassis));
+            for (double speed : speeds) {
+                assertTrue(Math.abs(speed) <= MAX_SPEED + EPSILON, "desaturated speed " + speed);
+            }
+        }
+    }
+
+    @Test
+    void chassisSpeedsMatchWpilib() {
+        SwerveDriveKinematics wpilib = wpilibKinematics();
+        FastSwerveKinematics fast = fastKinematics();
+        double[] speeds = new double[MODULE_X.length];
+        double[] angles = new double[MODULE_X.length];
+        double[] chassisOut = new double[3];
+
+        for (double[] chassis : CHASSIS_SPEEDS) {
+            SwerveModuleState[] states = wpilib.toSwerveModuleStates(new ChassisSpeeds(chassis[0], chassis[1], chassis[2]));
+            ChassisSpeeds expected = wpilib.toChassisSpeeds(states);
+            for (int i = 0; i < states.length; i++) {
+                speeds[i] = states[i].speedMetersPerSecond;
+                angles[i] = states[i].angle.getRadians();
+            }
+            fast.toChassisSpeeds(speeds, angles, chassisOut);
+            assertEquals(expected.vxMetersPerSecond, chassisOut[0], EPSILON);
+            assertEquals(expected.vyMetersPerSecond, chassisOut[1], EPSILON);
+            assertEquals(expected.omegaRadiansPerSecond, chassisOut[2], EPSILON);
+        }
+    }
+}
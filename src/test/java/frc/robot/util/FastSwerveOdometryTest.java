@@ -0,0 +1,96 @@
+package frc.robot.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import org.junit.jupiter.api.Test;
+
+/** Checks FastSwerveOdometry against WPILib's SwerveDriveOdometry over a driven sequence. */
+class FastSwerveOdometryTest {
+    private static final double EPSILON = 1e-9;
+    private static final double PERIOD = 0.02;
+
+    // {vx, vy, omega, loops}
+    private static final double[][] SEGMENTS = {
+        { 1.0, 0, 0, 50 },
+        { 0, 0, 1.5, 40 },
+        { 1.2, -0.8, 0.7, 60 },
+        { 0, 0, 0, 10 },
+        { -2.0, 1.0, -2.5, 75 },
+        { 0.5, 0.5, 0, 25 },
+    };
+
+    private final SwerveDriveKinematics wpilibKinematics = FastSwerveKinematicsTest.wpilibKinematics();
+    private final FastSwerveKinematics fastKinematics = FastSwerveKinematicsTest.fastKinematics();
+    private final int modules = fastKinematics.getNumModules();
+    private final double[] distances = new double[modules];
+    private final double[] angles = new double[modules];
+    // The gyro doesn't start at zero, so the offset between gyro and pose is exercised
+    private double gyroRadians = 0.4;
+
+    private SwerveModulePosition[] positions() {
+        SwerveModulePosition[] positions = new SwerveModulePosition[modules];
+        for (int i = 0; i < modules; i++) {
+            positions[i] = new SwerveModulePosition(distances[i], new Rotation2d(angles[i]));
+        }
+        return positions;
+    }
+
+    /* Moves the modules and gyro as if the robot drove at the chassis speed for one loop */
+    private void step(double vx, double vy, double omega) {
+        SwerveModuleState[] states = wpilibKinematics.toSwerveModuleStates(new ChassisSpeeds(vx, vy, omega));
+        for (int i = 0; i < modules; i++) {
+            distances[i] += states[i].speedMetersPerSecond * PERIOD;
+            angles[i] = states[i].angle.getRadians();
+        }
+        gyroRadians += omega * PERIOD;
+    }
+
+    private static void assertPoseMatches(Pose2d expected, FastSwerveOdometry fast, String message) {
+        assertEquals(expected.getX(), fast.getX(), EPSILON, message + " x");
+        assertEquals(expected.getY(), fast.getY(), EPSILON, message + " y");
+        assertEquals(0, MathUtil.angleModulus(expected.getRotation().getRadians() - fast.getTheta()), EPSILON,
+            message + " theta");
+    }
+
+    private void drive(SwerveDriveOdometry wpilib, FastSwerveOdometry fast) {
+        for (int s = 0; s < SEGMENTS.length; s++) {
+            double[] segment = SEGMENTS[s];
+            for (int loop = 0; loop < segment[3]; loop++) {
+                step(segment[0], segment[1], segment[2]);
+                Pose2d expected = wpilib.update(new Rotation2d(gyroRadians), positions());
+                fast.update(gyroRadians, distances, angles);
+                assertPoseMatches(expected, fast, "segment " + s + " loop " + loop);
+            }
+        }
+    }
+
+    @Test
+    void poseMatchesWpilib() {
+        SwerveDriveOdometry wpilib = new SwerveDriveOdometry(wpilibKinematics, new Rotation2d(gyroRadians), positions());
+        FastSwerveOdometry fast = new FastSwerveOdometry(fastKinematics, gyroRadians, distances);
+        drive(wpilib, fast);
+    }
+
+    @Test
+    void poseMatchesWpilibAfterReset() {
+        SwerveDriveOdometry wpilib = new SwerveDriveOdometry(wpilibKinematics, new Rotation2d(gyroRadians), positions());
+        FastSwerveOdometry fast = new FastSwerveOdometry(fastKinematics, gyroRadians, distances);
+        drive(wpilib, fast);
+
+        // Reset mid-run, with the modules and gyro wherever they ended up
+        Pose2d resetPose = new Pose2d(3.2, -1.4, new Rotation2d(2.9));
+        wpilib.resetPosition(new Rotation2d(gyroRadians), positions(), resetPose);
+        fast.resetPosition(gyroRadians, distances, resetPose.getX(), resetPose.getY(), resetPose.getRotation().getRadians());
+        assertPoseMatches(wpilib.getPoseMeters(), fast, "after reset");
+
+        drive(wpilib, fast);
+    }
+}